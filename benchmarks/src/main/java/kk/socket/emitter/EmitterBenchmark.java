@@ -0,0 +1,49 @@
+package kk.socket.emitter;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EmitterBenchmark {
+
+    @Param({"0", "1", "10"})
+    public int listeners;
+
+    private Emitter emitter;
+    private final Object data = "message";
+
+    @Setup
+    public void setup(final Blackhole blackhole) {
+        this.emitter = new Emitter();
+        for (int i = 0; i < this.listeners; i++) {
+            this.emitter.on("message", new Emitter.Listener() {
+                @Override
+                public void call(Object... args) {
+                    blackhole.consume(args);
+                }
+            });
+        }
+    }
+
+    @Benchmark
+    public Emitter emit() {
+        return this.emitter.emit("message", this.data);
+    }
+}
@@ -0,0 +1,62 @@
+package kk.socket.engineio.parser;
+
+import java.util.concurrent.TimeUnit;
+
+import kk.socket.utf8.UTF8Exception;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Websocket frame encoding and decoding of single packets.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ParserBenchmark {
+
+    @Param({Payloads.TEXT, Payloads.BINARY, Payloads.UTF8})
+    public String kind;
+
+    private Packet packet;
+    private Object encoded;
+
+    @Setup
+    public void setup() throws UTF8Exception {
+        this.packet = Payloads.message(this.kind, 0);
+        Parser.encodePacket(this.packet, new Parser.EncodeCallback() {
+            @Override
+            public void call(Object data) {
+                ParserBenchmark.this.encoded = data;
+            }
+        });
+    }
+
+    @Benchmark
+    public void encodePacket(final Blackhole blackhole) throws UTF8Exception {
+        Parser.encodePacket(this.packet, new Parser.EncodeCallback() {
+            @Override
+            public void call(Object data) {
+                blackhole.consume(data);
+            }
+        });
+    }
+
+    @Benchmark
+    public Packet decodePacket() {
+        return this.encoded instanceof String ?
+                Parser.decodePacket((String)this.encoded) : Parser.decodePacket((byte[])this.encoded);
+    }
+}
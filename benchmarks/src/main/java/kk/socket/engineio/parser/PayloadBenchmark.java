@@ -0,0 +1,94 @@
+package kk.socket.engineio.parser;
+
+import java.util.concurrent.TimeUnit;
+
+import kk.socket.utf8.UTF8Exception;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Polling payload encoding and decoding, in the binary and the text formats.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PayloadBenchmark {
+
+    @Param({"1", "100", "10000"})
+    public int packets;
+
+    @Param({Payloads.TEXT, Payloads.BINARY, Payloads.UTF8})
+    public String kind;
+
+    private Packet[] payload;
+    private byte[] encoded;
+    private String encodedText;
+
+    @Setup
+    public void setup() throws UTF8Exception {
+        this.payload = Payloads.messages(this.kind, this.packets);
+        Parser.encodePayload(this.payload, new Parser.EncodeCallback<byte[]>() {
+            @Override
+            public void call(byte[] data) {
+                PayloadBenchmark.this.encoded = data;
+            }
+        });
+
+        // the text format only carries strings; binary packets would be base64 encoded
+        StringBuilder text = new StringBuilder();
+        for (Packet packet : Payloads.messages(Payloads.BINARY.equals(this.kind) ? Payloads.TEXT : this.kind, this.packets)) {
+            Parser.encodePacket(packet, true, new Parser.EncodeCallback<String>() {
+                @Override
+                public void call(String data) {
+                    text.append(data.length()).append(':').append(data);
+                }
+            });
+        }
+        this.encodedText = text.toString();
+    }
+
+    @Benchmark
+    public void encodePayload(final Blackhole blackhole) throws UTF8Exception {
+        Parser.encodePayload(this.payload, new Parser.EncodeCallback<byte[]>() {
+            @Override
+            public void call(byte[] data) {
+                blackhole.consume(data);
+            }
+        });
+    }
+
+    @Benchmark
+    public void decodePayload(final Blackhole blackhole) {
+        Parser.decodePayload(this.encoded, new Parser.DecodePayloadCallback() {
+            @Override
+            public boolean call(Packet packet, int index, int total) {
+                blackhole.consume(packet);
+                return true;
+            }
+        });
+    }
+
+    @Benchmark
+    public void decodeTextPayload(final Blackhole blackhole) {
+        Parser.decodePayload(this.encodedText, new Parser.DecodePayloadCallback<String>() {
+            @Override
+            public boolean call(Packet<String> packet, int index, int total) {
+                blackhole.consume(packet);
+                return true;
+            }
+        });
+    }
+}
@@ -0,0 +1,36 @@
+package kk.socket.engineio.parser;
+
+import java.util.Random;
+
+/**
+ * Message fixtures shared by the parser benchmarks.
+ */
+final class Payloads {
+
+    static final String TEXT = "text";
+    static final String BINARY = "binary";
+    static final String UTF8 = "utf8";
+
+    private Payloads() {}
+
+    static Packet message(String kind, int index) {
+        switch (kind) {
+            case BINARY:
+                byte[] data = new byte[64];
+                new Random(index).nextBytes(data);
+                return new Packet<byte[]>(Packet.MESSAGE, data);
+            case UTF8:
+                return new Packet<String>(Packet.MESSAGE, "{\"id\":" + index + ",\"msg\":\"cash money €€€ 𝌆 ׊ⰼ\"}");
+            default:
+                return new Packet<String>(Packet.MESSAGE, "{\"id\":" + index + ",\"msg\":\"status update for the sheet\"}");
+        }
+    }
+
+    static Packet[] messages(String kind, int count) {
+        Packet[] packets = new Packet[count];
+        for (int i = 0; i < count; i++) {
+            packets[i] = message(kind, i);
+        }
+        return packets;
+    }
+}
@@ -0,0 +1,89 @@
+package kk.socket.thread;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link EventThreadHelper#exec} from another thread, which queues the task, and from
+ * the event thread itself, which runs it inline.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EventThreadBenchmark {
+
+    static final int TASKS = 1000;
+
+    private ExecutorService service;
+    private final Runnable task = new Runnable() {
+        @Override
+        public void run() {
+            EventThreadBenchmark.this.count++;
+        }
+    };
+    private volatile int count;
+
+    @Setup
+    public void setup() {
+        this.service = EventThreadHelper.newFixedThreadPool(1);
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        this.service.shutdown();
+        this.service.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TASKS)
+    public void exec() throws InterruptedException {
+        for (int i = 0; i < TASKS; i++) {
+            EventThreadHelper.exec(this.task, this.service);
+        }
+        this.await();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TASKS)
+    public void execOnEventThread() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        EventThreadHelper.exec(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < TASKS; i++) {
+                    EventThreadHelper.exec(EventThreadBenchmark.this.task, EventThreadBenchmark.this.service);
+                }
+                latch.countDown();
+            }
+        }, this.service);
+        latch.await();
+    }
+
+    private void await() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        EventThreadHelper.exec(new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        }, this.service);
+        latch.await();
+    }
+}
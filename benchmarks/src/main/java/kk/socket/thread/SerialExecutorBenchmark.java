@@ -0,0 +1,96 @@
+package kk.socket.thread;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Tasks per second, and with the GC profiler bytes per task, handed to a socket's
+ * executor from another thread:
+ * <ul>
+ * <li>{@code completableFuture}: the former {@link EventThreadHelper#nextTick}, one
+ * {@link CompletableFuture} chain per task on the platform event thread;</li>
+ * <li>{@code eventThread}: the current {@link EventThreadHelper#nextTick} on the same thread;</li>
+ * <li>{@code serial}: a {@link SerialExecutor} on its shared pool.</li>
+ * </ul>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SerialExecutorBenchmark {
+
+    private static final Logger logger = Logger.getLogger(SerialExecutorBenchmark.class.getName());
+
+    static final int TASKS = 1000;
+
+    @Param({"completableFuture", "eventThread", "serial"})
+    public String executor;
+
+    private ExecutorService service;
+    private final Runnable task = new Runnable() {
+        @Override
+        public void run() {
+            SerialExecutorBenchmark.this.count++;
+        }
+    };
+    private volatile int count;
+
+    @Setup
+    public void setup() {
+        this.service = "serial".equals(this.executor) ?
+                new SerialExecutor() : EventThreadHelper.newFixedThreadPool(1);
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        this.service.shutdown();
+        this.service.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TASKS)
+    public void dispatch() throws InterruptedException {
+        for (int i = 0; i < TASKS; i++) {
+            this.submit(this.task);
+        }
+        final CountDownLatch latch = new CountDownLatch(1);
+        this.submit(new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        });
+        latch.await();
+    }
+
+    private void submit(final Runnable task) {
+        if ("completableFuture".equals(this.executor)) {
+            CompletableFuture.runAsync(() -> task.run(), this.service).exceptionally((t) -> {
+                logger.log(Level.SEVERE, "task threw exception", t);
+                return null;
+            });
+        } else {
+            EventThreadHelper.nextTick(task, this.service);
+        }
+    }
+}
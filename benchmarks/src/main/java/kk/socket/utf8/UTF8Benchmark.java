@@ -0,0 +1,48 @@
+package kk.socket.utf8;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class UTF8Benchmark {
+
+    @Param({"ascii", "mixed"})
+    public String kind;
+
+    private String string;
+    private String encoded;
+
+    @Setup
+    public void setup() throws UTF8Exception {
+        this.string = "ascii".equals(this.kind) ?
+                "{\"id\":42,\"msg\":\"status update for the sheet\"}" :
+                "{\"id\":42,\"msg\":\"cash money €€€ 𝌆 ׊ⰼ\"}";
+        this.encoded = UTF8.encode(this.string);
+    }
+
+    @Benchmark
+    public String encode() throws UTF8Exception {
+        return UTF8.encode(this.string);
+    }
+
+    @Benchmark
+    public String decode() throws UTF8Exception {
+        return UTF8.decode(this.encoded);
+    }
+}
@@ -0,0 +1,51 @@
+package kk.socket.engineio.client;
+
+import java.nio.ByteBuffer;
+
+import kk.socket.emitter.Emitter;
+
+/**
+ * Adapts a listener written for byte[] messages to sockets created with
+ * {@link Transport.Options#binaryAsByteBuffer}. A {@link ByteBuffer} argument is copied
+ * into a byte[] only when this listener is called; other listeners still get the view.
+ *
+ * <pre>
+ * socket.on(Socket.EVENT_MESSAGE, new ByteArrayListener(listener));
+ * </pre>
+ *
+ * <p>Remove the adapter, not the wrapped listener, with {@link Emitter#off(String, Emitter.Listener)}.</p>
+ */
+public class ByteArrayListener implements Emitter.Listener {
+
+    private final Emitter.Listener listener;
+
+    public ByteArrayListener(Emitter.Listener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void call(Object... args) {
+        Object[] converted = args;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i] instanceof ByteBuffer) {
+                if (converted == args) {
+                    converted = args.clone();
+                }
+                converted[i] = toByteArray((ByteBuffer)args[i]);
+            }
+        }
+        this.listener.call(converted);
+    }
+
+    /**
+     * Copies the remaining content of a buffer, leaving its position unchanged.
+     *
+     * @param buffer the buffer to copy.
+     * @return a new array.
+     */
+    public static byte[] toByteArray(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+}
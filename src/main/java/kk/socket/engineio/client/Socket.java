@@ -2,27 +2,36 @@ package kk.socket.engineio.client;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import kk.socket.emitter.Emitter;
 import kk.socket.engineio.client.transports.Polling;
 import kk.socket.engineio.client.transports.PollingXHR;
 import kk.socket.engineio.client.transports.WebSocket;
+import kk.socket.engineio.parser.EncodedPacket;
 import kk.socket.engineio.parser.Packet;
+import kk.socket.engineio.parser.PacketCodec;
+import kk.socket.engineio.parser.PacketPool;
 import kk.socket.engineio.parser.Parser;
+import kk.socket.engineio.parser.V3PacketCodec;
+import kk.socket.engineio.parser.V4PacketCodec;
 import kk.socket.parseqs.ParseQS;
+import kk.socket.thread.EventLoop;
+import kk.socket.thread.EventLoopGroup;
 import kk.socket.thread.EventThreadHelper;
+import kk.socket.thread.HashedWheelTimer;
 import okhttp3.OkHttpClient;
 
 
@@ -47,6 +56,35 @@ public class Socket extends Emitter {
         }
     }
 
+    /**
+     * What {@code send} does when the write buffer is full.
+     */
+    public enum OverflowPolicy {
+        /**
+         * Waits until the buffer drains enough. Sends from the socket's own event thread, such
+         * as from a listener, never wait and may go past the limit. If the waiting thread is
+         * interrupted, the stage returned by {@code send} completes exceptionally as with
+         * {@link #FAIL}.
+         */
+        BLOCK,
+        /**
+         * Accepts the message and drops the oldest messages not yet handed to the transport.
+         * The stages of the dropped messages complete exceptionally with an
+         * {@link EngineIOException}.
+         */
+        DROP_OLDEST,
+        /**
+         * Drops the message: the stage returned by {@code send} is already completed
+         * exceptionally with an {@link EngineIOException}.
+         */
+        DROP_NEWEST,
+        /**
+         * Rejects the message: the stage returned by {@code send} is already completed
+         * exceptionally with an {@link EngineIOException}, so the caller can retry later.
+         */
+        FAIL
+    }
+
     /**
      * Called on successful connection.
      */
@@ -62,6 +100,12 @@ public class Socket extends Emitter {
      */
     public static final String EVENT_MESSAGE = "message";
 
+    /**
+     * Called with a List of the messages received together, after their
+     * {@link #EVENT_MESSAGE} events.
+     */
+    public static final String EVENT_MESSAGE_BATCH = "messageBatch";
+
     /**
      * Called when an error occurs.
      */
@@ -79,6 +123,12 @@ public class Socket extends Emitter {
      */
     public static final String EVENT_DRAIN = "drain";
 
+    /**
+     * Called with false when the buffered amount rises above the high watermark, and with
+     * true when it falls back to the low watermark.
+     */
+    public static final String EVENT_WRITABILITY_CHANGED = "writabilityChanged";
+
     public static final String EVENT_HANDSHAKE = "handshake";
     public static final String EVENT_UPGRADING = "upgrading";
     public static final String EVENT_UPGRADE = "upgrade";
@@ -110,6 +160,9 @@ public class Socket extends Emitter {
     private boolean timestampRequests;
     private boolean upgrading;
     private boolean rememberUpgrade;
+    private boolean rawTextPayload;
+    private boolean binaryAsByteBuffer;
+    private boolean textAsCharSequence;
     /*package*/ int port;
     private int policyPort;
     private int prevBufferLen;
@@ -122,16 +175,35 @@ public class Socket extends Emitter {
     private List<String> transports;
     private List<String> upgrades;
     private Map<String, String> query;
-    /*package*/ LinkedList<Packet> writeBuffer = new LinkedList<Packet>();
+    /*package*/ WriteQueue writeBuffer = new WriteQueue();
+    private WriteBufferLimit writeLimit;
+    private long highWaterMark;
+    private long lowWaterMark;
+    private volatile boolean writable = true;
+    private long flushDelayMicros;
+    private long maxBatchBytes;
+    private long batchBytes;
+    private boolean flushScheduled;
+    private int corked;
     /*package*/ Transport transport;
-    private Future pingTimeoutTimer;
-    private Future pingIntervalTimer;
+    private HashedWheelTimer.Timeout pingTimeoutTimer;
+    private HashedWheelTimer.Timeout pingIntervalTimer;
     private okhttp3.WebSocket.Factory webSocketFactory;
     private okhttp3.Call.Factory callFactory;
+    private PacketCodec codec;
+    private PacketPool packetPool;
+    private int inboundBatchSize;
+    private List<Object> messageBatch;
+    private List<Packet> messageBatchPackets;
 
     private ReadyState readyState;
-    private ScheduledExecutorService heartbeatScheduler;
+    private HashedWheelTimer timer;
+    private boolean lazyHeartbeat;
+    private long lastActivityNanos;
+    private long activityTimeout;
     private ExecutorService service;
+    private EventLoop eventLoop;
+    private boolean virtualThreads;
     private final Listener onHeartbeatAsListener = new Listener() {
         @Override
         public void call(Object... args) {
@@ -200,15 +272,34 @@ public class Socket extends Emitter {
         this.path = (opts.path != null ? opts.path : "/engine.io").replaceAll("/$", "") + "/";
         this.timestampParam = opts.timestampParam != null ? opts.timestampParam : "t";
         this.timestampRequests = opts.timestampRequests;
+        this.rawTextPayload = opts.rawTextPayload;
+        this.binaryAsByteBuffer = opts.binaryAsByteBuffer;
+        this.textAsCharSequence = opts.textAsCharSequence;
+        this.codec = (opts.codecFactory != null ? opts.codecFactory : V3PacketCodec.FACTORY).create();
+        this.packetPool = opts.packetPool;
+        this.timer = opts.timer != null ? opts.timer : HashedWheelTimer.shared();
+        this.lazyHeartbeat = opts.lazyHeartbeat;
+        this.inboundBatchSize = opts.inboundBatchSize;
+        this.writeLimit = new WriteBufferLimit(opts.writeBufferMessages, opts.writeBufferBytes, opts.overflowPolicy);
+        this.highWaterMark = opts.writeBufferHighWaterMark;
+        this.lowWaterMark = Math.min(opts.writeBufferLowWaterMark, opts.writeBufferHighWaterMark);
+        this.flushDelayMicros = opts.flushDelayMicros;
+        this.maxBatchBytes = opts.maxBatchBytes;
         this.transports = new ArrayList<String>(Arrays.asList(opts.transports != null ?
                 opts.transports : new String[]{Polling.NAME, WebSocket.NAME}));
         this.policyPort = opts.policyPort != 0 ? opts.policyPort : 843;
         this.rememberUpgrade = opts.rememberUpgrade;
         this.callFactory = opts.callFactory != null ? opts.callFactory : defaultCallFactory;
         this.webSocketFactory = opts.webSocketFactory != null ? opts.webSocketFactory : defaultWebSocketFactory;
-		this.service = opts.service != null ? opts.service
-				: Executors
-						.newSingleThreadExecutor(new EventThreadHelper.NamedThreadFactory("socketPool", "eventThread"));
+        if (opts.service == null && opts.eventLoopGroup != null) {
+            this.eventLoop = opts.eventLoopGroup.next(this);
+        }
+        this.virtualThreads = opts.virtualThreads;
+        if (this.virtualThreads && !EventThreadHelper.isVirtualThreadSupported()) {
+            logger.warning("virtual threads need JDK 21 or later; falling back to a platform thread");
+            this.virtualThreads = false;
+        }
+		this.service = opts.service != null ? opts.service : this.newService();
         if (callFactory == null) {
             if (defaultOkHttpClient == null) {
                 defaultOkHttpClient = new OkHttpClient();
@@ -238,8 +329,7 @@ public class Socket extends Emitter {
      */
 	public Socket open() {
 		if (this.service == null) {
-			this.service = Executors.newSingleThreadExecutor(new EventThreadHelper.NamedThreadFactory(
-							"socketPool", "eventThread"));
+			this.service = this.newService();
 		}
 		EventThreadHelper.exec(() -> {
 			String transportName;
@@ -267,7 +357,7 @@ public class Socket extends Emitter {
         logger.fine(String.format("creating transport '%s'", name));
         Map<String, String> query = new HashMap<String, String>(this.query);
 
-        query.put("EIO", String.valueOf(Parser.PROTOCOL));
+        query.put("EIO", String.valueOf(this.codec.protocol()));
         query.put("transport", name);
         if (this.id != null) {
             query.put("sid", this.id);
@@ -281,11 +371,17 @@ public class Socket extends Emitter {
         opts.query = query;
         opts.timestampRequests = this.timestampRequests;
         opts.timestampParam = this.timestampParam;
+        opts.rawTextPayload = this.rawTextPayload;
+        opts.binaryAsByteBuffer = this.binaryAsByteBuffer;
+        opts.textAsCharSequence = this.textAsCharSequence;
         opts.policyPort = this.policyPort;
         opts.socket = this;
         opts.callFactory = this.callFactory;
         opts.webSocketFactory = this.webSocketFactory;
         opts.service = this.service;
+        opts.codec = this.codec;
+        opts.packetPool = this.packetPool;
+        opts.inboundBatchSize = this.inboundBatchSize;
 
         Transport transport;
         if (WebSocket.NAME.equals(name)) {
@@ -322,6 +418,11 @@ public class Socket extends Emitter {
             public void call(Object... args) {
                 self.onPacket(args.length > 0 ? (Packet) args[0] : null);
             }
+        }).on(Transport.EVENT_BATCH_END, new Listener() {
+            @Override
+            public void call(Object... args) {
+                self.onBatchEnd();
+            }
         }).on(Transport.EVENT_ERROR, new Listener() {
             @Override
             public void call(Object... args) {
@@ -359,7 +460,7 @@ public class Socket extends Emitter {
                         if (failed[0]) return;
 
                         Packet msg = (Packet)args[0];
-                        if (Packet.PONG.equals(msg.type) && "probe".equals(msg.data)) {
+                        if (msg.code() == Packet.PONG_CODE && "probe".equals(msg.data)) {
                             logger.fine(String.format("probe transport '%s' pong", name));
                             self.upgrading = true;
                             self.emit(EVENT_UPGRADING, transport[0]);
@@ -496,69 +597,179 @@ public class Socket extends Emitter {
             logger.fine(String.format("socket received: type '%s', data '%s'", packet.type, packet.data));
 
             this.emit(EVENT_PACKET, packet);
-            this.emit(EVENT_HEARTBEAT);
-
-            if (Packet.OPEN.equals(packet.type)) {
-				this.onHandshake(new HandshakeData((String)packet.data));
-            } else if (Packet.PONG.equals(packet.type)) {
-                this.setPing();
-                this.emit(EVENT_PONG);
-            } else if (Packet.ERROR.equals(packet.type)) {
-                EngineIOException err = new EngineIOException("server error");
-                err.code = packet.data;
-                this.onError(err);
-            } else if (Packet.MESSAGE.equals(packet.type)) {
-                this.emit(EVENT_DATA, packet.data);
-                this.emit(EVENT_MESSAGE, packet.data);
+            if (this.lazyHeartbeat) {
+                // checked when the ping timeout fires
+                this.lastActivityNanos = System.nanoTime();
+                this.activityTimeout = 0;
+            } else {
+                this.emit(EVENT_HEARTBEAT);
+            }
+
+            switch (packet.code()) {
+                case Packet.OPEN_CODE:
+                    this.onHandshake(new HandshakeData((String)packet.data));
+                    break;
+                case Packet.PING_CODE:
+                    if (this.isServerPing()) {
+                        this.emit(EVENT_PING);
+                        this.sendPacket(Packet.PONG, null);
+                    }
+                    break;
+                case Packet.PONG_CODE:
+                    if (!this.isServerPing()) {
+                        this.setPing();
+                    }
+                    this.emit(EVENT_PONG);
+                    break;
+                case Packet.ERROR_CODE:
+                    EngineIOException err = new EngineIOException("server error");
+                    err.code = packet.data;
+                    this.onError(err);
+                    break;
+                case Packet.MESSAGE_CODE:
+                    Object data = packet.data;
+                    if (this.binaryAsByteBuffer && data instanceof byte[]) {
+                        // polling payloads still decode into arrays
+                        data = ByteBuffer.wrap((byte[])data).asReadOnlyBuffer();
+                    }
+                    if (this.packetPool != null) {
+                        // pass the packet along so listeners can retain its data
+                        this.emit(EVENT_DATA, data, packet);
+                        this.emit(EVENT_MESSAGE, data, packet);
+                    } else {
+                        this.emit(EVENT_DATA, data);
+                        this.emit(EVENT_MESSAGE, data);
+                    }
+                    if (this.hasListeners(EVENT_MESSAGE_BATCH)) {
+                        if (this.messageBatch == null) {
+                            this.messageBatch = new ArrayList<Object>();
+                        }
+                        this.messageBatch.add(data);
+                        if (this.packetPool != null) {
+                            // keep pooled data alive until the batch has been emitted
+                            packet.retain();
+                            if (this.messageBatchPackets == null) {
+                                this.messageBatchPackets = new ArrayList<Packet>();
+                            }
+                            this.messageBatchPackets.add(packet);
+                        }
+                    }
+                    break;
+                default:
+                    break;
             }
         } else {
             logger.fine(String.format("packet received with socket readyState '%s'", this.readyState));
         }
     }
 
+    private void onBatchEnd() {
+        List<Object> batch = this.messageBatch;
+        if (batch == null) return;
+
+        this.messageBatch = null;
+        try {
+            this.emit(EVENT_MESSAGE_BATCH, batch);
+        } finally {
+            this.releaseMessageBatch();
+        }
+    }
+
+    private void releaseMessageBatch() {
+        List<Packet> packets = this.messageBatchPackets;
+        if (packets == null) return;
+
+        this.messageBatchPackets = null;
+        for (Packet packet : packets) {
+            packet.release();
+        }
+    }
+
     private void onHandshake(HandshakeData data) {
         this.emit(EVENT_HANDSHAKE, data);
         this.id = data.sid;
         this.transport.query.put("sid", data.sid);
+        // the codec may have settled on another protocol version while decoding the handshake
+        this.transport.query.put("EIO", String.valueOf(this.codec.protocol()));
         this.upgrades = this.filterUpgrades(Arrays.asList(data.upgrades));
         this.pingInterval = data.pingInterval;
         this.pingTimeout = data.pingTimeout;
         this.onOpen();
         // In case open handler closes socket
         if (ReadyState.CLOSED == this.readyState) return;
-        this.setPing();
+        if (this.isServerPing()) {
+            this.onHeartbeat(0);
+        } else {
+            this.setPing();
+        }
 
         this.off(EVENT_HEARTBEAT, this.onHeartbeatAsListener);
         this.on(EVENT_HEARTBEAT, this.onHeartbeatAsListener);
     }
 
     private void onHeartbeat(long timeout) {
-        if (this.pingTimeoutTimer != null) {
-            pingTimeoutTimer.cancel(false);
-        }
-
         if (timeout <= 0) {
             timeout = this.pingInterval + this.pingTimeout;
         }
+        if (this.lazyHeartbeat) {
+            this.lastActivityNanos = System.nanoTime();
+            this.activityTimeout = timeout;
+        }
+
+        // called for every packet, so just push the deadline back
+        if (this.pingTimeoutTimer != null && this.pingTimeoutTimer.rearm(timeout, TimeUnit.MILLISECONDS)) {
+            return;
+        }
+        this.schedulePingTimeout(timeout);
+    }
 
+    private void schedulePingTimeout(long timeout) {
         final Socket self = this;
-		this.pingTimeoutTimer = this.getHeartbeatScheduler().schedule(() -> {
+        final HashedWheelTimer.Timeout[] timer = new HashedWheelTimer.Timeout[1];
+		timer[0] = this.pingTimeoutTimer = this.timer.newTimeout(() -> {
 			EventThreadHelper.exec(() -> {
-				if (self.readyState == ReadyState.CLOSED)
+				// a newer timer replaced this one while it was firing
+				if (self.readyState == ReadyState.CLOSED || self.pingTimeoutTimer != timer[0])
 					return;
+				if (self.lazyHeartbeat) {
+					long remaining = self.remainingActivityTime();
+					if (remaining > 0) {
+						self.schedulePingTimeout(remaining);
+						return;
+					}
+				}
 				self.onClose("ping timeout");
 			}, service);
 		}, timeout, TimeUnit.MILLISECONDS);
     }
 
+    /**
+     * Milliseconds left before the connection counts as dead, from the last packet received.
+     */
+    private long remainingActivityTime() {
+        long timeout = this.activityTimeout > 0 ? this.activityTimeout : this.pingInterval + this.pingTimeout;
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - this.lastActivityNanos);
+        return timeout - elapsed;
+    }
+
+    /**
+     * Whether the server sends pings, which is the case from protocol version 4 on.
+     */
+    private boolean isServerPing() {
+        return this.codec.protocol() >= V4PacketCodec.PROTOCOL;
+    }
+
     private void setPing() {
-        if (this.pingIntervalTimer != null) {
-            pingIntervalTimer.cancel(false);
+        if (this.pingIntervalTimer != null && this.pingIntervalTimer.rearm(this.pingInterval, TimeUnit.MILLISECONDS)) {
+            return;
         }
 
         final Socket self = this;
-		this.pingIntervalTimer = this.getHeartbeatScheduler().schedule(() -> {
+        final HashedWheelTimer.Timeout[] timer = new HashedWheelTimer.Timeout[1];
+		timer[0] = this.pingIntervalTimer = this.timer.newTimeout(() -> {
 			EventThreadHelper.exec(() -> {
+				if (self.pingIntervalTimer != timer[0])
+					return;
 				logger.fine(String.format("writing ping packet - expecting pong within %sms", self.pingTimeout));
 				self.ping();
 				self.onHeartbeat(self.pingTimeout);
@@ -571,109 +782,309 @@ public class Socket extends Emitter {
      */
     private void ping() {
 		EventThreadHelper.exec(() -> {
-			Socket.this.sendPacket(Packet.PING, () -> Socket.this.emit(EVENT_PING));
+			Socket.this.sendPacket(Packet.PING, newFuture(() -> Socket.this.emit(EVENT_PING)));
 		}, service);
     }
 
     private void onDrain() {
-        for (int i = 0; i < this.prevBufferLen; i++) {
-            this.writeBuffer.poll();
+        List<CompletableFuture<Void>> sent = null;
+        for (int i = 0; i < this.prevBufferLen && !this.writeBuffer.isEmpty(); i++) {
+            CompletableFuture<Void> future = this.writeBuffer.future(0);
+            this.discard(this.writeBuffer.poll());
+            if (future != null) {
+                if (sent == null) sent = new ArrayList<CompletableFuture<Void>>(this.prevBufferLen - i);
+                sent.add(future);
+            }
         }
 
         this.prevBufferLen = 0;
-        if (0 == this.writeBuffer.size()) {
+        this.updateWritability();
+        // completed once the buffer is consistent, since callbacks may send more
+        if (sent != null) {
+            for (CompletableFuture<Void> future : sent) {
+                future.complete(null);
+            }
+        }
+        if (this.writeBuffer.isEmpty()) {
             this.emit(EVENT_DRAIN);
         } else {
             this.flush();
         }
     }
 
+    /**
+     * Holds back every packet sent from now on, until as many calls to {@link #uncork()}, so
+     * that they are flushed together. Pings are held back too, so keep corked spans short.
+     *
+     * @return a reference to this object.
+     */
+    public Socket cork() {
+        EventThreadHelper.exec(() -> Socket.this.corked++, service);
+        return this;
+    }
+
+    /**
+     * Undoes one {@link #cork()}, and flushes what was held back once none is left.
+     *
+     * @return a reference to this object.
+     */
+    public Socket uncork() {
+        EventThreadHelper.exec(() -> {
+			if (Socket.this.corked > 0 && --Socket.this.corked == 0) {
+				Socket.this.flush();
+			}
+		}, service);
+        return this;
+    }
+
+    /**
+     * Runs {@code sends} corked, so the messages it sends are flushed together.
+     *
+     * @param sends code that sends messages on this socket.
+     * @return a reference to this object.
+     */
+    public Socket batch(Runnable sends) {
+        this.cork();
+        try {
+            sends.run();
+        } finally {
+            this.uncork();
+        }
+        return this;
+    }
+
     private void flush() {
         if (this.readyState != ReadyState.CLOSED && this.transport.writable &&
-                !this.upgrading && this.writeBuffer.size() != 0) {
-            logger.fine(String.format("flushing %d packets in socket", this.writeBuffer.size()));
-            this.prevBufferLen = this.writeBuffer.size();
-            this.transport.send(this.writeBuffer.toArray(new Packet[this.writeBuffer.size()]));
+                !this.upgrading && this.corked == 0 && !this.writeBuffer.isEmpty()) {
+            // one range, so that every pending packet goes out in this flush
+            this.writeBuffer.compact();
+            int count = this.writeBuffer.size();
+            logger.fine(String.format("flushing %d packets in socket", count));
+            this.prevBufferLen = count;
+            this.batchBytes = 0;
+            this.transport.send(this.writeBuffer.array(), this.writeBuffer.offset(0), count);
             this.emit(EVENT_FLUSH);
         }
     }
 
-    public void write(String msg) {
-        this.write(msg, null);
+    private void discard(Packet packet) {
+        if (WriteBufferLimit.counts(packet)) {
+            this.writeLimit.release(WriteBufferLimit.sizeOf(packet.data));
+        }
+        packet.release();
+    }
+
+    /**
+     * Drops the oldest messages not yet handed to the transport until the buffer fits.
+     */
+    private void evictOldest() {
+        List<CompletableFuture<Void>> dropped = new ArrayList<CompletableFuture<Void>>();
+        int i = this.prevBufferLen;
+        // the newest message is the one just accepted
+        while (i < this.writeBuffer.size() - 1 && this.writeLimit.isOverflowing()) {
+            if (WriteBufferLimit.counts(this.writeBuffer.get(i))) {
+                logger.fine("write buffer full, dropping the oldest message");
+                dropped.add(this.writeBuffer.future(i));
+                this.discard(this.writeBuffer.remove(i));
+            } else {
+                i++;
+            }
+        }
+        fail(dropped, new EngineIOException("dropped from a full write buffer"));
+    }
+
+    private static void fail(List<CompletableFuture<Void>> futures, Exception err) {
+        for (CompletableFuture<Void> future : futures) {
+            if (future != null) future.completeExceptionally(err);
+        }
+    }
+
+    private void updateWritability() {
+        long buffered = this.writeLimit.bytes();
+        if (this.writable ? buffered > this.highWaterMark : buffered <= this.lowWaterMark) {
+            this.writable = !this.writable;
+            this.emit(EVENT_WRITABILITY_CHANGED, this.writable);
+        }
+    }
+
+    /**
+     * The size of the messages sent but not yet written out, in characters for text and
+     * bytes for binary data.
+     */
+    public long bufferedAmount() {
+        return this.writeLimit.bytes();
+    }
+
+    /**
+     * Whether the buffered amount is below the high watermark; see {@link #EVENT_WRITABILITY_CHANGED}.
+     */
+    public boolean isWritable() {
+        return this.writable;
+    }
+
+    /**
+     * Same as {@link #send(String)}.
+     */
+    public CompletionStage<Void> write(String msg) {
+        return this.write(msg, null);
     }
 
-    public void write(String msg, Runnable fn) {
-        this.send(msg, fn);
+    public CompletionStage<Void> write(String msg, Runnable fn) {
+        return this.send(msg, fn);
     }
 
-    public void write(byte[] msg) {
-        this.write(msg, null);
+    public CompletionStage<Void> write(byte[] msg) {
+        return this.write(msg, null);
     }
 
-    public void write(byte[] msg, Runnable fn) {
-        this.send(msg, fn);
+    public CompletionStage<Void> write(byte[] msg, Runnable fn) {
+        return this.send(msg, fn);
     }
 
     /**
      * Sends a message.
      *
      * @param msg
+     * @return a stage completed once the message is written out, when the transport drains:
+     * its polling request succeeded, or it was handed to the websocket. It completes
+     * exceptionally with an {@link EngineIOException} if the message is rejected or dropped
+     * because the write buffer is full, see {@link OverflowPolicy}, or if the socket closes
+     * first. A rejected message's stage is already complete when it is returned.
      */
-    public void send(String msg) {
-        this.send(msg, null);
+    public CompletionStage<Void> send(String msg) {
+        return this.send(msg, null);
     }
 
-    public void send(byte[] msg) {
-        this.send(msg, null);
+    public CompletionStage<Void> send(byte[] msg) {
+        return this.send(msg, null);
     }
 
     /**
      * Sends a message.
      *
      * @param msg
-     * @param fn callback to be called on drain
+     * @param fn callback to be called once the message is written out
+     * @return a stage completed once the message is written out; see {@link #send(String)}.
+     */
+    public CompletionStage<Void> send(final String msg, final Runnable fn) {
+        if (!this.acquire(msg)) return rejected();
+        final CompletableFuture<Void> future = newFuture(fn);
+        EventThreadHelper.exec(() -> Socket.this.sendPacket(Packet.MESSAGE, msg, future), service);
+        return future;
+    }
+
+    public CompletionStage<Void> send(final byte[] msg, final Runnable fn) {
+        if (!this.acquire(msg)) return rejected();
+        final CompletableFuture<Void> future = newFuture(fn);
+        EventThreadHelper.exec(() -> Socket.this.sendPacket(Packet.MESSAGE, msg, future), service);
+        return future;
+    }
+
+    public CompletionStage<Void> send(EncodedPacket packet) {
+        return this.send(packet, null);
+    }
+
+    /**
+     * Sends a packet encoded once for many sockets; see {@link EncodedPacket}.
+     *
+     * @param packet a shared packet, usually a {@link Packet#MESSAGE}.
+     * @param fn callback to be called once the packet is written out
+     * @return a stage completed once the packet is written out; see {@link #send(String)}.
      */
-    public void send(final String msg, final Runnable fn) {
-        EventThreadHelper.exec(() -> Socket.this.sendPacket(Packet.MESSAGE, msg, fn), service);
+    public CompletionStage<Void> send(final EncodedPacket packet, final Runnable fn) {
+        if (WriteBufferLimit.counts(packet) && !this.acquire(packet.data)) return rejected();
+        final CompletableFuture<Void> future = newFuture(fn);
+        EventThreadHelper.exec(() -> Socket.this.sendPacket(packet, future), service);
+        return future;
     }
 
-    public void send(final byte[] msg, final Runnable fn) {
-        EventThreadHelper.exec(() -> Socket.this.sendPacket(Packet.MESSAGE, msg, fn), service);
+    private boolean acquire(Object data) {
+        if (this.writeLimit.acquire(WriteBufferLimit.sizeOf(data), !EventThreadHelper.isCurrent(this.service))) {
+            return true;
+        }
+        logger.fine(String.format("write buffer full, %s message",
+                this.writeLimit.policy() == OverflowPolicy.FAIL ? "rejecting" : "dropping the newest"));
+        return false;
+    }
+
+    private static CompletableFuture<Void> newFuture(Runnable fn) {
+        CompletableFuture<Void> future = new CompletableFuture<Void>();
+        if (fn != null) {
+            future.whenComplete((ignored, err) -> {
+				if (err != null) return;
+				try {
+					fn.run();
+				} catch (Throwable t) {
+					// nobody holds the dependent stage, so it would be lost there
+					logger.log(Level.SEVERE, "send callback threw exception", t);
+				}
+			});
+        }
+        return future;
+    }
+
+    private static CompletableFuture<Void> rejected() {
+        CompletableFuture<Void> future = new CompletableFuture<Void>();
+        future.completeExceptionally(new EngineIOException("write buffer full"));
+        return future;
     }
 
-    private void sendPacket(String type, Runnable fn) {
-        this.sendPacket(new Packet(type), fn);
+    private void sendPacket(String type, CompletableFuture<Void> future) {
+        this.sendPacket(new Packet(type), future);
     }
 
-    private void sendPacket(String type, String data, Runnable fn) {
-        Packet<String> packet = new Packet<String>(type, data);
-        sendPacket(packet, fn);
+    private void sendPacket(String type, String data, CompletableFuture<Void> future) {
+        Packet<String> packet = this.packetPool != null ?
+                this.packetPool.acquire(type, data) : new Packet<String>(type, data);
+        sendPacket(packet, future);
     }
 
-    private void sendPacket(String type, byte[] data, Runnable fn) {
-        Packet<byte[]> packet = new Packet<byte[]>(type, data);
-        sendPacket(packet, fn);
+    private void sendPacket(String type, byte[] data, CompletableFuture<Void> future) {
+        Packet<byte[]> packet = this.packetPool != null ?
+                this.packetPool.acquire(type, data) : new Packet<byte[]>(type, data);
+        sendPacket(packet, future);
     }
 
-    private void sendPacket(Packet packet, final Runnable fn) {
+    private void sendPacket(Packet packet, CompletableFuture<Void> future) {
         if (ReadyState.CLOSING == this.readyState || ReadyState.CLOSED == this.readyState) {
+            this.discard(packet);
+            if (future != null) {
+                future.completeExceptionally(new EngineIOException("socket closed"));
+            }
             return;
         }
 
         this.emit(EVENT_PACKET_CREATE, packet);
-        this.writeBuffer.offer(packet);
-        if (null != fn) {
-            this.once(EVENT_FLUSH, new Listener() {
-                @Override
-                public void call(Object... args) {
-                    fn.run();
-                }
-            });
+        this.writeBuffer.offer(packet, future);
+        if (this.writeLimit.policy() == OverflowPolicy.DROP_OLDEST && this.writeLimit.isOverflowing()) {
+            this.evictOldest();
         }
+        this.updateWritability();
 
+        if (this.flushDelayMicros > 0 && WriteBufferLimit.counts(packet)) {
+            this.batchBytes += WriteBufferLimit.sizeOf(packet.data);
+            if (this.maxBatchBytes <= 0 || this.batchBytes < this.maxBatchBytes) {
+                this.scheduleFlush();
+                return;
+            }
+        }
         this.flush();
     }
 
+    /**
+     * Flushes once the batching window has passed, together with whatever else was sent
+     * in the meantime.
+     */
+    private void scheduleFlush() {
+        if (this.flushScheduled) return;
+
+        this.flushScheduled = true;
+        EventThreadHelper.schedule(() -> {
+			Socket.this.flushScheduled = false;
+			Socket.this.flush();
+		}, this.flushDelayMicros, TimeUnit.MICROSECONDS, service);
+    }
+
     /**
      * Disconnects the client.
      *
@@ -683,6 +1094,11 @@ public class Socket extends Emitter {
         EventThreadHelper.exec(() -> {
 			if (Socket.this.readyState == ReadyState.OPENING || Socket.this.readyState == ReadyState.OPEN) {
 				Socket.this.readyState = ReadyState.CLOSING;
+				if (Socket.this.corked > 0) {
+					// the buffer must drain before the transport closes
+					Socket.this.corked = 0;
+					Socket.this.flush();
+				}
 
 				final Socket self = Socket.this;
 
@@ -690,10 +1106,7 @@ public class Socket extends Emitter {
 					self.onClose("forced close");
 					logger.fine("socket closing - telling transport to close");
 					self.transport.close();
-					if (service != null) {
-						EventThreadHelper.shutdownWithTimeout(service, 10, TimeUnit.MINUTES);
-						service = null;
-					}
+					self.shutdownService();
 				};
 
 				final Listener[] cleanupAndClose = new Listener[1];
@@ -712,7 +1125,7 @@ public class Socket extends Emitter {
 					self.once(EVENT_UPGRADE_ERROR, cleanupAndClose[0]);
 				};
 
-				if (Socket.this.writeBuffer.size() > 0) {
+				if (!Socket.this.writeBuffer.isEmpty()) {
 					Socket.this.once(EVENT_DRAIN, new Listener() {
 						@Override
 						public void call(Object... args) {
@@ -729,15 +1142,30 @@ public class Socket extends Emitter {
 					close.run();
 				}
 			} else {
-				if (service != null) {
-					EventThreadHelper.shutdownWithTimeout(service, 10, TimeUnit.MINUTES);
-					service = null;
-				}
+				Socket.this.shutdownService();
 			}
         }, service);
         return this;
     }
 
+    private ExecutorService newService() {
+        if (this.eventLoop != null) {
+            return this.eventLoop;
+        }
+        if (this.virtualThreads) {
+            return EventThreadHelper.newVirtualThreadLoop();
+        }
+        return Executors.newSingleThreadExecutor(new EventThreadHelper.NamedThreadFactory("socketPool", "eventThread"));
+    }
+
+    private void shutdownService() {
+        // a shared event loop outlives its sockets
+        if (this.service != null && this.service != this.eventLoop) {
+            EventThreadHelper.shutdownWithTimeout(this.service, 10, TimeUnit.MINUTES);
+            this.service = null;
+        }
+    }
+
     private void onError(Exception err) {
         logger.fine(String.format("socket error %s", err));
         Socket.priorWebsocketSuccess = false;
@@ -756,13 +1184,12 @@ public class Socket extends Emitter {
 
             // clear timers
             if (this.pingIntervalTimer != null) {
-                this.pingIntervalTimer.cancel(false);
+                this.pingIntervalTimer.cancel();
+                this.pingIntervalTimer = null;
             }
             if (this.pingTimeoutTimer != null) {
-                this.pingTimeoutTimer.cancel(false);
-            }
-            if (this.heartbeatScheduler != null) {
-                this.heartbeatScheduler.shutdown();
+                this.pingTimeoutTimer.cancel();
+                this.pingTimeoutTimer = null;
             }
 
             // stop event from firing again for transport
@@ -785,8 +1212,36 @@ public class Socket extends Emitter {
 
             // clear buffers after, so users can still
             // grab the buffers on `close` event
+            List<CompletableFuture<Void>> unsent = new ArrayList<CompletableFuture<Void>>();
+            for (int i = 0; i < self.writeBuffer.size(); i++) {
+                unsent.add(self.writeBuffer.future(i));
+            }
+            self.recycleWriteBuffer();
             self.writeBuffer.clear();
+            self.writable = true;
+            self.corked = 0;
+            self.messageBatch = null;
+            self.releaseMessageBatch();
             self.prevBufferLen = 0;
+            fail(unsent, new EngineIOException("socket closed: " + reason, desc));
+        }
+    }
+
+    private void recycleWriteBuffer() {
+        int i = 0;
+        for (Packet packet : this.writeBuffer) {
+            if (WriteBufferLimit.counts(packet)) {
+                // wakes up senders blocked on a full buffer
+                this.writeLimit.release(WriteBufferLimit.sizeOf(packet.data));
+            }
+            if (this.packetPool == null) continue;
+
+            if (i++ < this.prevBufferLen) {
+                // the transport may still be writing it
+                this.packetPool.discard(packet);
+            } else {
+                packet.release();
+            }
         }
     }
 
@@ -806,13 +1261,6 @@ public class Socket extends Emitter {
         return this.id;
     }
 
-    private ScheduledExecutorService getHeartbeatScheduler() {
-        if (this.heartbeatScheduler == null || this.heartbeatScheduler.isShutdown()) {
-            this.heartbeatScheduler = Executors.newSingleThreadScheduledExecutor();
-        }
-        return this.heartbeatScheduler;
-    }
-
     public static class Options extends Transport.Options {
 
         /**
@@ -830,6 +1278,78 @@ public class Socket extends Emitter {
         public String query;
 		public ExecutorService service;
 
+        /**
+         * Runs this socket's events on a loop shared with other sockets, instead of on a thread
+         * of its own. Ignored when {@link #service} is set.
+         */
+        public EventLoopGroup eventLoopGroup;
+
+        /**
+         * Runs this socket's events on a virtual thread of its own, so that many
+         * mostly idle sockets do not each hold a platform thread. Needs JDK 21 or later, and
+         * falls back to a platform thread otherwise. Ignored when {@link #service} or
+         * {@link #eventLoopGroup} is set.
+         */
+        public boolean virtualThreads;
+
+        /**
+         * Runs the heartbeat timers. Defaults to {@link HashedWheelTimer#shared()}.
+         */
+        public HashedWheelTimer timer;
+
+        /**
+         * Whether received packets only record the time of the last activity, which the ping
+         * timeout checks when it fires, instead of emitting {@link Socket#EVENT_HEARTBEAT} and
+         * pushing the timeout back one by one. Defaults to `false`.
+         */
+        public boolean lazyHeartbeat;
+
+        /**
+         * The most messages waiting to be written, or 0 for no limit. Defaults to 0.
+         */
+        public int writeBufferMessages;
+
+        /**
+         * The largest total size of the messages waiting to be written, in characters for text
+         * and bytes for binary data, or 0 for no limit. Defaults to 0.
+         */
+        public long writeBufferBytes;
+
+        /**
+         * What {@code send} does when the write buffer is full. Defaults to {@link OverflowPolicy#FAIL}.
+         */
+        public OverflowPolicy overflowPolicy = OverflowPolicy.FAIL;
+
+        /**
+         * The buffered amount above which the socket is no longer writable. Defaults to 64 KiB.
+         */
+        public long writeBufferHighWaterMark = 64 * 1024;
+
+        /**
+         * The buffered amount at which the socket is writable again. Defaults to 32 KiB.
+         */
+        public long writeBufferLowWaterMark = 32 * 1024;
+
+        /**
+         * How long messages are held back so that those sent meanwhile are flushed with them,
+         * in microseconds, or 0 to flush every message as soon as it is sent. Control packets,
+         * such as pings, are never held back. Defaults to 0.
+         */
+        public long flushDelayMicros;
+
+        /**
+         * The size of the held back messages, in characters for text and bytes for binary
+         * data, at which they are flushed without waiting for {@link #flushDelayMicros}, or 0
+         * for no limit. Defaults to 64 KiB.
+         */
+        public long maxBatchBytes = 64 * 1024;
+
+        /**
+         * Creates the codec of each connection. Defaults to the engine.io protocol version 3 format;
+         * use {@link kk.socket.engineio.parser.NegotiatingPacketCodec#FACTORY} to prefer version 4.
+         */
+        public PacketCodec.Factory codecFactory;
+
 
         private static Options fromURI(URI uri, Options opts) {
             if (opts == null) {
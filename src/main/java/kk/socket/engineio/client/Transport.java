@@ -1,12 +1,19 @@
 package kk.socket.engineio.client;
 
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import kk.socket.emitter.Emitter;
 import kk.socket.engineio.parser.Packet;
-import kk.socket.engineio.parser.Parser;
+import kk.socket.engineio.parser.PacketCodec;
+import kk.socket.engineio.parser.PacketPool;
+import kk.socket.engineio.parser.V3PacketCodec;
 import kk.socket.thread.EventThreadHelper;
 import kk.socket.utf8.UTF8Exception;
 import okhttp3.Call;
@@ -31,12 +38,22 @@ public abstract class Transport extends Emitter {
     public static final String EVENT_REQUEST_HEADERS = "requestHeaders";
     public static final String EVENT_RESPONSE_HEADERS = "responseHeaders";
 
+    /**
+     * Called after the packets of one received batch have been emitted.
+     */
+    public static final String EVENT_BATCH_END = "batchEnd";
+
+    public static final int DEFAULT_INBOUND_BATCH_SIZE = 64;
+
     public boolean writable;
     public String name;
     public Map<String, String> query;
 
     protected boolean secure;
     protected boolean timestampRequests;
+    protected boolean rawTextPayload;
+    protected boolean binaryAsByteBuffer;
+    protected boolean textAsCharSequence;
     protected int port;
     protected String path;
     protected String hostname;
@@ -46,6 +63,18 @@ public abstract class Transport extends Emitter {
     protected WebSocket.Factory webSocketFactory;
     protected Call.Factory callFactory;
     protected ExecutorService service;
+    protected PacketCodec codec;
+    protected PacketPool packetPool;
+    protected int inboundBatchSize;
+
+    private final Queue<Object> inbox = new ConcurrentLinkedQueue<Object>();
+    private final AtomicBoolean inboxScheduled = new AtomicBoolean();
+    private final Runnable drainInbox = new Runnable() {
+        @Override
+        public void run() {
+            Transport.this.drainInbox();
+        }
+    };
 
     public Transport(Options opts) {
         this.path = opts.path;
@@ -55,10 +84,16 @@ public abstract class Transport extends Emitter {
         this.query = opts.query;
         this.timestampParam = opts.timestampParam;
         this.timestampRequests = opts.timestampRequests;
+        this.rawTextPayload = opts.rawTextPayload;
+        this.binaryAsByteBuffer = opts.binaryAsByteBuffer;
+        this.textAsCharSequence = opts.textAsCharSequence;
         this.socket = opts.socket;
         this.webSocketFactory = opts.webSocketFactory;
         this.callFactory = opts.callFactory;
         this.service = opts.service;
+        this.codec = opts.codec != null ? opts.codec : V3PacketCodec.FACTORY.create();
+        this.packetPool = opts.packetPool;
+        this.inboundBatchSize = opts.inboundBatchSize > 0 ? opts.inboundBatchSize : DEFAULT_INBOUND_BATCH_SIZE;
     }
 
     protected Transport onError(String msg, Exception desc) {
@@ -88,11 +123,19 @@ public abstract class Transport extends Emitter {
 		return this;
     }
 
-    public void send(final Packet[] packets) {
+    public void send(Packet[] packets) {
+        this.send(packets, 0, packets.length);
+    }
+
+    /**
+     * Sends {@code count} packets of {@code packets} from {@code offset} on. The array must be
+     * left alone in that range until the transport emits {@link #EVENT_DRAIN}.
+     */
+    public void send(final Packet[] packets, final int offset, final int count) {
 		EventThreadHelper.exec(() -> {
 			if (Transport.this.readyState == ReadyState.OPEN) {
 				try {
-					Transport.this.write(packets);
+					Transport.this.write(packets, offset, count);
 				} catch (UTF8Exception err) {
 					throw new RuntimeException(err);
 				}
@@ -109,15 +152,65 @@ public abstract class Transport extends Emitter {
     }
 
     protected void onData(String data) {
-        this.onPacket(Parser.decodePacket(data));
+        this.onPacket(this.codec.decodePacket(data, this.packetPool));
     }
 
     protected void onData(byte[] data) {
-        this.onPacket(Parser.decodePacket(data));
+        this.onPacket(this.codec.decodePacket(data, this.packetPool));
+    }
+
+    protected void onData(ByteBuffer data) {
+        this.onPacket(this.codec.decodePacket(data, this.packetPool));
+    }
+
+    /**
+     * Queues a frame received on a network thread. Frames queued while the event thread is
+     * busy are handled together in one event-thread task, up to the inbound batch size.
+     *
+     * @param frame a String, byte[] or {@link ByteBuffer} frame, or a Runnable to run in
+     *              order with the frames, such as the handling of the connection closing.
+     */
+    protected void receive(Object frame) {
+        this.inbox.offer(frame);
+        if (this.inboxScheduled.compareAndSet(false, true)) {
+            EventThreadHelper.exec(this.drainInbox, service);
+        }
+    }
+
+    private void drainInbox() {
+        try {
+            for (int i = 0; i < this.inboundBatchSize; i++) {
+                Object frame = this.inbox.poll();
+                if (frame == null) break;
+
+                if (frame instanceof String) {
+                    this.onData((String)frame);
+                } else if (frame instanceof byte[]) {
+                    this.onData((byte[])frame);
+                } else if (frame instanceof ByteBuffer) {
+                    this.onData((ByteBuffer)frame);
+                } else {
+                    ((Runnable)frame).run();
+                }
+            }
+            this.onBatchEnd();
+        } finally {
+            this.inboxScheduled.set(false);
+            // more frames, or ones queued after the last poll; let other tasks run first
+            if (!this.inbox.isEmpty() && this.inboxScheduled.compareAndSet(false, true)) {
+                EventThreadHelper.nextTick(this.drainInbox, service);
+            }
+        }
+    }
+
+    protected void onBatchEnd() {
+        this.emit(EVENT_BATCH_END);
     }
 
     protected void onPacket(Packet packet) {
         this.emit(EVENT_PACKET, packet);
+        // listeners that keep a pooled packet have retained it
+        packet.release();
     }
 
     protected void onClose() {
@@ -127,6 +220,17 @@ public abstract class Transport extends Emitter {
 
     abstract protected void write(Packet[] packets) throws UTF8Exception;
 
+    /**
+     * Writes a range of {@code packets}. Copies it into an array of its own by default;
+     * transports that write packets one by one override it to read the range in place.
+     */
+    protected void write(Packet[] packets, int offset, int count) throws UTF8Exception {
+        if (offset != 0 || count != packets.length) {
+            packets = Arrays.copyOfRange(packets, offset, offset + count);
+        }
+        this.write(packets);
+    }
+
     abstract protected void doOpen();
 
     abstract protected void doClose();
@@ -139,10 +243,47 @@ public abstract class Transport extends Emitter {
         public String timestampParam;
         public boolean secure;
         public boolean timestampRequests;
+
+        /**
+         * Whether polling reads text payloads as raw bytes and decodes them without
+         * a UTF-16 intermediate. Defaults to `false`.
+         */
+        public boolean rawTextPayload;
+
+        /**
+         * Whether binary messages are delivered as read-only {@link ByteBuffer} views of the
+         * received frame instead of byte[] copies. Defaults to `false`.
+         *
+         * @see ByteArrayListener
+         */
+        public boolean binaryAsByteBuffer;
+
+        /**
+         * Whether polling delivers ASCII text messages as {@link CharSequence} views of the
+         * response, which allocate a String only once {@code toString()} is called, instead of
+         * Strings. Other text, and text read with {@link #rawTextPayload}, still arrives as
+         * Strings. Defaults to `false`.
+         */
+        public boolean textAsCharSequence;
+
+        /**
+         * Recycles packets and binary buffers of inbound and outbound messages.
+         * Defaults to `null`, which disables pooling.
+         *
+         * @see PacketPool
+         */
+        public PacketPool packetPool;
+
+        /**
+         * The most frames received over a websocket that are handled in one event-thread task.
+         * Defaults to {@value Transport#DEFAULT_INBOUND_BATCH_SIZE}.
+         */
+        public int inboundBatchSize;
         public int port = -1;
         public int policyPort = -1;
         public Map<String, String> query;
         protected Socket socket;
+        protected PacketCodec codec;
         public WebSocket.Factory webSocketFactory;
         public Call.Factory callFactory;
         public ExecutorService service;
@@ -0,0 +1,155 @@
+package kk.socket.engineio.client;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import kk.socket.engineio.parser.Packet;
+
+/**
+ * Counts the messages a {@link Socket} has accepted but not yet seen drained, and enforces
+ * its write buffer capacity.
+ *
+ * <p>Messages are counted when {@code send} is called, on the caller's thread, and given back
+ * on the event thread once written, dropped or discarded. Only {@link Packet#MESSAGE} packets
+ * are counted; text is measured in characters, binary data in bytes.</p>
+ */
+/*package*/ final class WriteBufferLimit {
+
+    private final int maxMessages;
+    private final long maxBytes;
+    private final Socket.OverflowPolicy policy;
+
+    private final AtomicInteger messages = new AtomicInteger();
+    private final AtomicLong bytes = new AtomicLong();
+
+    private final Object lock = new Object();
+    private volatile int waiters;
+
+    /**
+     * @param maxMessages the capacity in messages, or 0 for no limit.
+     * @param maxBytes the capacity in bytes, or 0 for no limit.
+     */
+    /*package*/ WriteBufferLimit(int maxMessages, long maxBytes, Socket.OverflowPolicy policy) {
+        this.maxMessages = maxMessages;
+        this.maxBytes = maxBytes;
+        this.policy = policy != null ? policy : Socket.OverflowPolicy.FAIL;
+    }
+
+    /*package*/ static boolean counts(Packet packet) {
+        return packet.code() == Packet.MESSAGE_CODE;
+    }
+
+    /*package*/ static long sizeOf(Object data) {
+        if (data instanceof String) {
+            return ((String)data).length();
+        }
+        if (data instanceof byte[]) {
+            return ((byte[])data).length;
+        }
+        return 0;
+    }
+
+    /*package*/ Socket.OverflowPolicy policy() {
+        return this.policy;
+    }
+
+    /**
+     * Makes room for a message about to be sent.
+     *
+     * @param size the size of the message.
+     * @param mayBlock false on the event thread, which would never see the buffer drain while
+     *                 blocked; the message then goes past the limit instead.
+     * @return false if the message must be discarded.
+     */
+    /*package*/ boolean acquire(long size, boolean mayBlock) {
+        for (;;) {
+            if (this.tryAcquire(size)) return true;
+
+            switch (this.policy) {
+                case DROP_OLDEST:
+                    // the event thread evicts queued messages to make up for it
+                    this.add(size);
+                    return true;
+                case BLOCK:
+                    if (!mayBlock) {
+                        this.add(size);
+                        return true;
+                    }
+                    if (!this.await(size)) return false;
+                    break;
+                default:
+                    return false;
+            }
+        }
+    }
+
+    /**
+     * Counts a message regardless of the capacity.
+     */
+    /*package*/ void add(long size) {
+        this.messages.incrementAndGet();
+        this.bytes.addAndGet(size);
+    }
+
+    /*package*/ void release(long size) {
+        this.messages.decrementAndGet();
+        this.bytes.addAndGet(-size);
+        this.signal();
+    }
+
+    /*package*/ boolean isOverflowing() {
+        return (this.maxMessages > 0 && this.messages.get() > this.maxMessages) ||
+                (this.maxBytes > 0 && this.bytes.get() > this.maxBytes);
+    }
+
+    /*package*/ long bytes() {
+        return this.bytes.get();
+    }
+
+    /*package*/ int messages() {
+        return this.messages.get();
+    }
+
+    private boolean tryAcquire(long size) {
+        int messages = this.messages.incrementAndGet();
+        long bytes = this.bytes.addAndGet(size);
+        // a message larger than the whole buffer still goes through on its own
+        if ((this.maxMessages > 0 && messages > this.maxMessages) ||
+                (this.maxBytes > 0 && bytes > this.maxBytes && bytes != size)) {
+            this.release(size);
+            return false;
+        }
+        return true;
+    }
+
+    private boolean hasRoom(long size) {
+        long bytes = this.bytes.get();
+        return (this.maxMessages <= 0 || this.messages.get() < this.maxMessages) &&
+                (this.maxBytes <= 0 || bytes == 0 || bytes + size <= this.maxBytes);
+    }
+
+    private boolean await(long size) {
+        synchronized (this.lock) {
+            this.waiters++;
+            try {
+                if (!this.hasRoom(size)) {
+                    this.lock.wait();
+                }
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } finally {
+                this.waiters--;
+            }
+        }
+    }
+
+    private void signal() {
+        if (this.waiters > 0) {
+            synchronized (this.lock) {
+                this.lock.notifyAll();
+            }
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package kk.socket.engineio.client;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+
+import kk.socket.engineio.parser.Packet;
+
+/**
+ * The write buffer of a {@link Socket}: a growable ring of packets, whose pending packets can
+ * be handed to a transport as a range of the backing array instead of a copy. Each packet
+ * may come with the future of its send, kept in a parallel array.
+ *
+ * <p>Only the event thread touches it.</p>
+ */
+/*package*/ final class WriteQueue implements Iterable<Packet> {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private Packet[] elements = new Packet[INITIAL_CAPACITY];
+    private CompletableFuture<Void>[] futures = newFutures(INITIAL_CAPACITY);
+    private int head;
+    private int size;
+
+    /*package*/ int size() {
+        return this.size;
+    }
+
+    /*package*/ boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /*package*/ void offer(Packet packet) {
+        this.offer(packet, null);
+    }
+
+    /*package*/ void offer(Packet packet, CompletableFuture<Void> future) {
+        if (this.size == this.elements.length) {
+            this.grow();
+        }
+        int index = this.index(this.size);
+        this.elements[index] = packet;
+        this.futures[index] = future;
+        this.size++;
+    }
+
+    /*package*/ Packet poll() {
+        if (this.size == 0) return null;
+
+        Packet packet = this.elements[this.head];
+        this.elements[this.head] = null;
+        this.futures[this.head] = null;
+        // starting over from the front keeps the next run of packets from wrapping
+        this.head = --this.size == 0 ? 0 : (this.head + 1) & (this.elements.length - 1);
+        return packet;
+    }
+
+    /*package*/ Packet get(int i) {
+        this.check(i);
+        return this.elements[this.index(i)];
+    }
+
+    /**
+     * The future of the {@code i}th packet, or null if it has none.
+     */
+    /*package*/ CompletableFuture<Void> future(int i) {
+        this.check(i);
+        return this.futures[this.index(i)];
+    }
+
+    /**
+     * Removes the {@code i}th packet, moving the packets after it forward.
+     */
+    /*package*/ Packet remove(int i) {
+        this.check(i);
+        Packet packet = this.elements[this.index(i)];
+        for (int j = i; j < this.size - 1; j++) {
+            int to = this.index(j);
+            int from = this.index(j + 1);
+            this.elements[to] = this.elements[from];
+            this.futures[to] = this.futures[from];
+        }
+        this.elements[this.index(this.size - 1)] = null;
+        this.futures[this.index(this.size - 1)] = null;
+        this.size--;
+        return packet;
+    }
+
+    /*package*/ void clear() {
+        for (int i = 0; i < this.size; i++) {
+            this.elements[this.index(i)] = null;
+            this.futures[this.index(i)] = null;
+        }
+        this.head = 0;
+        this.size = 0;
+    }
+
+    /**
+     * Lays the packets out one after another in {@link #array()}, so that a single range
+     * holds them all. Copies them into a new array if the ring has wrapped around.
+     */
+    /*package*/ void compact() {
+        if (this.head + this.size > this.elements.length) {
+            this.copyTo(this.elements.length);
+        }
+    }
+
+    /**
+     * The backing array, valid for the ranges given by {@link #offset} and {@link #contiguous}
+     * until the queue is next modified. A transport may keep reading it after that as long as
+     * those packets are not polled, since growing or compacting the queue copies into a new
+     * array.
+     */
+    /*package*/ Packet[] array() {
+        return this.elements;
+    }
+
+    /**
+     * The position of the {@code i}th packet in {@link #array()}.
+     */
+    /*package*/ int offset(int i) {
+        return this.index(i);
+    }
+
+    /**
+     * The number of packets from the {@code i}th on that are laid out one after another in
+     * {@link #array()}, before the ring wraps around.
+     */
+    /*package*/ int contiguous(int i) {
+        if (i >= this.size) return 0;
+        return Math.min(this.size - i, this.elements.length - this.index(i));
+    }
+
+    @Override
+    public Iterator<Packet> iterator() {
+        return new Iterator<Packet>() {
+            private int i;
+
+            @Override
+            public boolean hasNext() {
+                return this.i < WriteQueue.this.size;
+            }
+
+            @Override
+            public Packet next() {
+                if (!this.hasNext()) throw new NoSuchElementException();
+                return WriteQueue.this.get(this.i++);
+            }
+        };
+    }
+
+    private int index(int i) {
+        return (this.head + i) & (this.elements.length - 1);
+    }
+
+    private void check(int i) {
+        if (i < 0 || i >= this.size) {
+            throw new IndexOutOfBoundsException("index: " + i + ", size: " + this.size);
+        }
+    }
+
+    private void grow() {
+        this.copyTo(this.elements.length << 1);
+    }
+
+    private void copyTo(int capacity) {
+        Packet[] elements = new Packet[capacity];
+        CompletableFuture<Void>[] futures = newFutures(capacity);
+        int first = this.elements.length - this.head;
+        System.arraycopy(this.elements, this.head, elements, 0, first);
+        System.arraycopy(this.elements, 0, elements, first, this.head);
+        System.arraycopy(this.futures, this.head, futures, 0, first);
+        System.arraycopy(this.futures, 0, futures, first, this.head);
+        this.elements = elements;
+        this.futures = futures;
+        this.head = 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static CompletableFuture<Void>[] newFutures(int capacity) {
+        return (CompletableFuture<Void>[]) new CompletableFuture[capacity];
+    }
+}
@@ -94,15 +94,24 @@ abstract public class Polling extends Transport {
 
     @Override
     protected void onData(String data) {
-        _onData(data);
+        _onData(data, false);
     }
 
     @Override
     protected void onData(byte[] data) {
-        _onData(data);
+        _onData(data, false);
     }
 
-    private void _onData(Object data) {
+    /**
+     * Called with the raw UTF-8 bytes of a text payload.
+     *
+     * @param data the response body.
+     */
+    protected void onTextData(byte[] data) {
+        _onData(data, true);
+    }
+
+    private void _onData(Object data, boolean text) {
         final Polling self = this;
         logger.fine(String.format("polling got data %s", data));
         Parser.DecodePayloadCallback callback = new Parser.DecodePayloadCallback() {
@@ -112,7 +121,7 @@ abstract public class Polling extends Transport {
                     self.onOpen();
                 }
 
-                if (Packet.CLOSE.equals(packet.type)) {
+                if (packet.code() == Packet.CLOSE_CODE) {
                     self.onClose();
                     return false;
                 }
@@ -122,13 +131,23 @@ abstract public class Polling extends Transport {
             }
         };
 
-        if (data instanceof String) {
+        if (data instanceof String && this.textAsCharSequence) {
+            @SuppressWarnings("unchecked")
+            Parser.DecodePayloadCallback<CharSequence> tempCallback = callback;
+            this.codec.decodePayloadAsViews((String)data, tempCallback);
+        } else if (data instanceof String) {
+            @SuppressWarnings("unchecked")
+            Parser.DecodePayloadCallback<String> tempCallback = callback;
+            this.codec.decodePayload((String)data, tempCallback);
+        } else if (text) {
             @SuppressWarnings("unchecked")
             Parser.DecodePayloadCallback<String> tempCallback = callback;
-            Parser.decodePayload((String)data, tempCallback);
+            this.codec.decodeTextPayload((byte[])data, tempCallback);
         } else if (data instanceof byte[]) {
-            Parser.decodePayload((byte[])data, callback);
+            this.codec.decodePayload((byte[])data, callback);
         }
+        // a payload is a batch of its own
+        this.onBatchEnd();
 
         if (this.readyState != ReadyState.CLOSED) {
             this.polling = false;
@@ -179,7 +198,7 @@ abstract public class Polling extends Transport {
             }
         };
 
-        Parser.encodePayload(packets, new Parser.EncodeCallback<byte[]>() {
+        this.codec.encodePayload(packets, new Parser.EncodeCallback<byte[]>() {
             @Override
             public void call(byte[] data) {
                 self.doWrite(data, callbackfn);
@@ -1,6 +1,7 @@
 package kk.socket.engineio.client.transports;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedList;
@@ -38,6 +39,7 @@ public class PollingXHR extends Polling {
         }
         opts.uri = this.uri();
         opts.callFactory = this.callFactory;
+        opts.rawText = this.rawTextPayload;
 
         Request req = new Request(opts);
 
@@ -63,6 +65,7 @@ public class PollingXHR extends Polling {
     protected void doWrite(byte[] data, final Runnable fn) {
         Request.Options opts = new Request.Options();
         opts.method = "POST";
+        opts.contentType = this.codec.payloadContentType();
         opts.data = data;
         Request req = this.request(opts);
         final PollingXHR self = this;
@@ -94,10 +97,15 @@ public class PollingXHR extends Polling {
             public void call(final Object... args) {
 				EventThreadHelper.exec(() -> {
 					Object arg = args.length > 0 ? args[0] : null;
+					boolean text = args.length > 1 && Boolean.TRUE.equals(args[1]);
 					if (arg instanceof String) {
 						self.onData((String)arg);
 					} else if (arg instanceof byte[]) {
-						self.onData((byte[])arg);
+						if (text) {
+							self.onTextData((byte[])arg);
+						} else {
+							self.onData((byte[])arg);
+						}
 					}
                 }, service);
             }
@@ -128,8 +136,10 @@ public class PollingXHR extends Polling {
 
         // data is always a binary
         private byte[] data;
+        private String contentType;
 
         private Call.Factory callFactory;
+        private boolean rawText;
         private Response response;
         private Call requestCall;
 
@@ -137,6 +147,8 @@ public class PollingXHR extends Polling {
             this.method = opts.method != null ? opts.method : "GET";
             this.uri = opts.uri;
             this.data = opts.data;
+            this.contentType = opts.contentType != null ? opts.contentType : BINARY_CONTENT_TYPE;
+            this.rawText = opts.rawText;
             this.callFactory = opts.callFactory != null ? opts.callFactory : new OkHttpClient();
         }
 
@@ -146,7 +158,7 @@ public class PollingXHR extends Polling {
             Map<String, List<String>> headers = new TreeMap<String, List<String>>(String.CASE_INSENSITIVE_ORDER);
 
             if ("POST".equals(this.method)) {
-                headers.put("Content-type", new LinkedList<String>(Collections.singletonList(BINARY_CONTENT_TYPE)));
+                headers.put("Content-type", new LinkedList<String>(Collections.singletonList(this.contentType)));
             }
 
             self.onRequestHeaders(headers);
@@ -161,7 +173,7 @@ public class PollingXHR extends Polling {
             okhttp3.Request request = requestBuilder
                     .url(HttpUrl.parse(self.uri))
                     .method(self.method, (self.data != null) ?
-                            RequestBody.create(MediaType.parse(BINARY_CONTENT_TYPE), self.data) : null)
+                            RequestBody.create(MediaType.parse(self.contentType), self.data) : null)
                     .build();
 
             requestCall = callFactory.newCall(request);
@@ -199,6 +211,11 @@ public class PollingXHR extends Polling {
             this.onSuccess();
         }
 
+        private void onTextData(byte[] data) {
+            this.emit(EVENT_DATA, data, true);
+            this.onSuccess();
+        }
+
         private void onError(Exception err) {
             this.emit(EVENT_ERROR, err);
         }
@@ -212,11 +229,14 @@ public class PollingXHR extends Polling {
         }
 
         private void onLoad() {
-            String contentType = response.body().contentType().toString();
+            MediaType mediaType = response.body().contentType();
+            String contentType = mediaType.toString();
 
             try {
                 if (BINARY_CONTENT_TYPE.equalsIgnoreCase(contentType)) {
                     this.onData(response.body().bytes());
+                } else if (this.rawText && StandardCharsets.UTF_8.equals(mediaType.charset(StandardCharsets.UTF_8))) {
+                    this.onTextData(response.body().bytes());
                 } else {
                     this.onData(response.body().string());
                 }
@@ -230,7 +250,17 @@ public class PollingXHR extends Polling {
             public String uri;
             public String method;
             public byte[] data;
+
+            /**
+             * The content type of data. Defaults to `application/octet-stream`.
+             */
+            public String contentType;
             public Call.Factory callFactory;
+
+            /**
+             * Whether a text response is passed on as its raw UTF-8 bytes.
+             */
+            public boolean rawText;
         }
     }
 }
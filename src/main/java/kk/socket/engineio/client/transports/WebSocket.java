@@ -62,7 +62,7 @@ public class WebSocket extends Transport {
                 if (text == null) {
                     return;
                 }
-				EventThreadHelper.exec(() -> self.onData(text), service);
+				self.receive(text);
             }
 
             @Override
@@ -70,12 +70,18 @@ public class WebSocket extends Transport {
                 if (bytes == null) {
                     return;
                 }
-				EventThreadHelper.exec(() -> self.onData(bytes.toByteArray()), service);
+				if (self.binaryAsByteBuffer) {
+					// a read-only view of the frame, decoded without copying
+					self.receive(bytes.asByteBuffer());
+				} else {
+					self.receive(bytes.toByteArray());
+				}
             }
 
             @Override
             public void onClosed(okhttp3.WebSocket webSocket, int code, String reason) {
-				EventThreadHelper.exec(() -> self.onClose(), service);
+				// after the frames still in the inbox
+				self.receive((Runnable) () -> self.onClose());
             }
 
             @Override
@@ -83,12 +89,17 @@ public class WebSocket extends Transport {
                 if (!(t instanceof Exception)) {
                     return;
                 }
-				EventThreadHelper.exec(() -> self.onError("websocket error", (Exception) t), service);
+				self.receive((Runnable) () -> self.onError("websocket error", (Exception) t));
             }
         });
     }
 
     protected void write(Packet[] packets) throws UTF8Exception {
+        this.write(packets, 0, packets.length);
+    }
+
+    @Override
+    protected void write(Packet[] packets, int offset, int count) throws UTF8Exception {
         final WebSocket self = this;
         this.writable = false;
 
@@ -105,14 +116,15 @@ public class WebSocket extends Transport {
             }
         };
 
-        final int[] total = new int[]{packets.length};
-        for (Packet packet : packets) {
+        final int[] total = new int[]{count};
+        for (int i = offset; i < offset + count; i++) {
+            Packet packet = packets[i];
             if (this.readyState != ReadyState.OPENING && this.readyState != ReadyState.OPEN) {
                 // Ensure we don't try to send anymore packets if the socket ends up being closed due to an exception
                 break;
             }
 
-            Parser.encodePacket(packet, new Parser.EncodeCallback() {
+            this.codec.encodePacket(packet, new Parser.EncodeCallback() {
                 @Override
                 public void call(Object packet) {
                     try {
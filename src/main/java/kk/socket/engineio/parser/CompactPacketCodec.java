@@ -0,0 +1,160 @@
+package kk.socket.engineio.parser;
+
+import java.nio.ByteBuffer;
+
+import kk.socket.utf8.UTF8;
+import kk.socket.utf8.UTF8Exception;
+
+/**
+ * A compact binary framing for polling payloads, for servers that support it.
+ * Websocket frames are the same as in {@link V3PacketCodec}.
+ *
+ * <p>Each payload frame is a flags byte, the body length as an unsigned LEB128 varint,
+ * then the body. The low bits of the flags byte hold the packet type code and bit 7
+ * is set for binary bodies; string bodies are plain UTF-8.</p>
+ */
+public class CompactPacketCodec extends V3PacketCodec {
+
+    public static final PacketCodec.Factory FACTORY = new PacketCodec.Factory() {
+        @Override
+        public PacketCodec create() {
+            return new CompactPacketCodec();
+        }
+    };
+
+    private static final int BINARY_FLAG = 0x80;
+    private static final int TYPE_MASK = 0x0F;
+    private static final int MAX_VARINT_LENGTH = 5;
+
+    @Override
+    public void encodePayload(Packet[] packets, Parser.EncodeCallback<byte[]> callback) throws UTF8Exception {
+        if (EncodedPacket.contains(packets)) {
+            callback.call(EncodedPacket.joinPayloads(this, packets, -1));
+            return;
+        }
+        int length = 0;
+        for (Packet packet : packets) {
+            int bodyLength = bodyLength(packet);
+            length += 1 + varintLength(bodyLength) + bodyLength;
+        }
+
+        ByteBuffer out = ByteBuffer.allocate(length);
+        for (Packet packet : packets) {
+            int type = Parser.wireCode(packet);
+            if (packet.data instanceof byte[]) {
+                byte[] data = (byte[])packet.data;
+                out.put((byte)(BINARY_FLAG | type));
+                writeVarint(out, data.length);
+                out.put(data);
+            } else {
+                out.put((byte)type);
+                if (packet.data == null) {
+                    writeVarint(out, 0);
+                } else {
+                    String data = String.valueOf(packet.data);
+                    writeVarint(out, Parser.utf8Length(data));
+                    Parser.writeUTF8(out, data);
+                }
+            }
+        }
+        callback.call(out.array());
+    }
+
+    @Override
+    public void decodePayload(byte[] data, Parser.DecodePayloadCallback callback) {
+        int total = countFrames(data);
+        if (total < 0) {
+            @SuppressWarnings("unchecked")
+            Parser.DecodePayloadCallback<String> tempCallback = callback;
+            tempCallback.call(Parser.err, 0, 1);
+            return;
+        }
+
+        int position = 0;
+        for (int i = 0; i < total; i++) {
+            int flags = data[position++] & 0xFF;
+            int length = 0;
+            for (int shift = 0; ; shift += 7) {
+                int b = data[position++];
+                length |= (b & 0x7F) << shift;
+                if (b >= 0) break;
+            }
+
+            String type = Parser.decodeType(flags & TYPE_MASK);
+            Packet packet;
+            if ((flags & BINARY_FLAG) != 0) {
+                byte[] body = new byte[length];
+                System.arraycopy(data, position, body, 0, length);
+                packet = new Packet<byte[]>(type, body);
+            } else if (length == 0) {
+                packet = new Packet<String>(type);
+            } else {
+                try {
+                    packet = new Packet<String>(type, UTF8.decode(data, position, length));
+                } catch (UTF8Exception e) {
+                    @SuppressWarnings("unchecked")
+                    Parser.DecodePayloadCallback<String> tempCallback = callback;
+                    tempCallback.call(Parser.err, 0, 1);
+                    return;
+                }
+            }
+            position += length;
+
+            @SuppressWarnings("unchecked")
+            boolean ret = callback.call(packet, i, total);
+            if (!ret) return;
+        }
+    }
+
+    /**
+     * Validates the framing of a payload and counts its frames.
+     *
+     * @return the number of frames, or -1 if the payload is malformed.
+     */
+    private static int countFrames(byte[] data) {
+        int position = 0;
+        int total = 0;
+        while (position < data.length) {
+            int flags = data[position++] & 0xFF;
+            if (Parser.decodeType(flags & TYPE_MASK) == null || (flags & ~(BINARY_FLAG | TYPE_MASK)) != 0) {
+                return -1;
+            }
+
+            long length = 0;
+            for (int shift = 0; ; shift += 7) {
+                if (position >= data.length || shift >= 7 * MAX_VARINT_LENGTH) return -1;
+                int b = data[position++];
+                length |= (long)(b & 0x7F) << shift;
+                if (b >= 0) break;
+            }
+            if (length > data.length - position) return -1;
+
+            position += (int)length;
+            total++;
+        }
+        return total;
+    }
+
+    private static int bodyLength(Packet packet) throws UTF8Exception {
+        if (packet.data instanceof byte[]) {
+            return ((byte[])packet.data).length;
+        }
+        return packet.data != null ? Parser.utf8Length(String.valueOf(packet.data)) : 0;
+    }
+
+    private static int varintLength(int value) {
+        int length = 1;
+        while ((value >>>= 7) != 0) {
+            length++;
+        }
+        return length;
+    }
+
+    private static void writeVarint(ByteBuffer out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.put((byte)((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte)value);
+    }
+}
@@ -0,0 +1,146 @@
+package kk.socket.engineio.parser;
+
+import kk.socket.utf8.UTF8Exception;
+
+/**
+ * A packet that remembers how it was encoded, for sending the same message through
+ * many sockets. Each codec class encodes it once, for websockets and for polling, and
+ * every later send with a codec of that class reuses the cached bytes.
+ *
+ * <p>Instances are shared between connections, so their type and data must not be
+ * changed after construction.</p>
+ */
+public final class EncodedPacket<T> extends Packet<T> {
+
+    private volatile Entry[] entries = new Entry[0];
+
+    public EncodedPacket(String type, T data) {
+        super(type, data);
+    }
+
+    /**
+     * Returns the websocket frame a codec produces for this packet, a String or a byte[].
+     *
+     * @param codec the codec writing the frame.
+     * @return the cached frame.
+     * @throws UTF8Exception if the packet cannot be encoded.
+     */
+    public Object frame(PacketCodec codec) throws UTF8Exception {
+        Entry entry = this.entry(codec);
+        Object frame = entry.frame;
+        if (frame == null) {
+            final Object[] result = new Object[1];
+            codec.encodePacket(new Packet<T>(this.type, this.data), new Parser.EncodeCallback() {
+                @Override
+                public void call(Object data) {
+                    result[0] = data;
+                }
+            });
+            entry.frame = frame = result[0];
+        }
+        return frame;
+    }
+
+    /**
+     * Returns the polling payload a codec produces for this packet alone.
+     *
+     * @param codec the codec writing the payload.
+     * @return the cached payload, which must not be modified.
+     * @throws UTF8Exception if the packet cannot be encoded.
+     */
+    public byte[] payload(PacketCodec codec) throws UTF8Exception {
+        Entry entry = this.entry(codec);
+        byte[] payload = entry.payload;
+        if (payload == null) {
+            entry.payload = payload = encodePayload(codec, new Packet[] {new Packet<T>(this.type, this.data)});
+        }
+        return payload;
+    }
+
+    private Entry entry(PacketCodec codec) {
+        Class<?> format = codec.getClass();
+        for (Entry entry : this.entries) {
+            if (entry.format == format) return entry;
+        }
+        synchronized (this) {
+            Entry[] entries = this.entries;
+            for (Entry entry : entries) {
+                if (entry.format == format) return entry;
+            }
+            Entry entry = new Entry(format);
+            Entry[] copy = new Entry[entries.length + 1];
+            System.arraycopy(entries, 0, copy, 0, entries.length);
+            copy[entries.length] = entry;
+            this.entries = copy;
+            return entry;
+        }
+    }
+
+    /*package*/ static boolean contains(Packet[] packets) {
+        for (Packet packet : packets) {
+            if (packet instanceof EncodedPacket) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Joins the single-packet payloads of {@code packets} with {@code separator}, or back to
+     * back if it is negative. Runs of plain packets are encoded together.
+     */
+    /*package*/ static byte[] joinPayloads(PacketCodec codec, Packet[] packets, int separator) throws UTF8Exception {
+        byte[][] parts = new byte[packets.length][];
+        int count = 0;
+        int length = 0;
+        for (int i = 0; i < packets.length; ) {
+            byte[] part;
+            if (packets[i] instanceof EncodedPacket) {
+                part = ((EncodedPacket)packets[i++]).payload(codec);
+            } else {
+                int start = i;
+                while (i < packets.length && !(packets[i] instanceof EncodedPacket)) i++;
+                Packet[] run = new Packet[i - start];
+                System.arraycopy(packets, start, run, 0, run.length);
+                part = encodePayload(codec, run);
+            }
+            parts[count++] = part;
+            length += part.length;
+        }
+        if (separator >= 0) {
+            length += count - 1;
+        }
+
+        byte[] payload = new byte[length];
+        int offset = 0;
+        for (int i = 0; i < count; i++) {
+            if (i > 0 && separator >= 0) {
+                payload[offset++] = (byte)separator;
+            }
+            System.arraycopy(parts[i], 0, payload, offset, parts[i].length);
+            offset += parts[i].length;
+        }
+        return payload;
+    }
+
+    private static byte[] encodePayload(PacketCodec codec, Packet[] packets) throws UTF8Exception {
+        final byte[][] result = new byte[1][];
+        codec.encodePayload(packets, new Parser.EncodeCallback<byte[]>() {
+            @Override
+            public void call(byte[] data) {
+                result[0] = data;
+            }
+        });
+        return result[0];
+    }
+
+
+    private static final class Entry {
+
+        final Class<?> format;
+        volatile Object frame;
+        volatile byte[] payload;
+
+        Entry(Class<?> format) {
+            this.format = format;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package kk.socket.engineio.parser;
+
+import java.nio.ByteBuffer;
+
+import kk.socket.utf8.UTF8Exception;
+
+/**
+ * Asks for protocol version 4 and falls back to version 3 when the server answers
+ * the handshake in the version 3 format. The version is settled by the first packet
+ * or payload received, which is always the handshake. A websocket handshake is the
+ * same in both versions, so it keeps the version asked for.
+ */
+public class NegotiatingPacketCodec implements PacketCodec {
+
+    public static final PacketCodec.Factory FACTORY = new PacketCodec.Factory() {
+        @Override
+        public PacketCodec create() {
+            return new NegotiatingPacketCodec();
+        }
+    };
+
+    private final PacketCodec preferred = new V4PacketCodec();
+    private final PacketCodec fallback = new V3PacketCodec();
+    private PacketCodec codec;
+
+    /**
+     * Returns the codec the version was settled on.
+     *
+     * @return the settled codec, or null before the handshake.
+     */
+    public PacketCodec negotiated() {
+        return this.codec;
+    }
+
+    private PacketCodec current() {
+        return this.codec != null ? this.codec : this.preferred;
+    }
+
+    private PacketCodec settle(boolean preferred) {
+        if (this.codec == null) {
+            this.codec = preferred ? this.preferred : this.fallback;
+        }
+        return this.codec;
+    }
+
+    private PacketCodec settle(String payload) {
+        // a version 3 payload starts with a length header, "97:0{...", instead of "0{..."
+        return settle(payload != null && payload.length() > 1 && payload.charAt(0) == '0' && payload.charAt(1) == '{');
+    }
+
+    @Override
+    public int protocol() {
+        return current().protocol();
+    }
+
+    @Override
+    public String payloadContentType() {
+        return current().payloadContentType();
+    }
+
+    @Override
+    public void encodePacket(Packet packet, Parser.EncodeCallback callback) throws UTF8Exception {
+        current().encodePacket(packet, callback);
+    }
+
+    @Override
+    public Packet<String> decodePacket(String data) {
+        return decodePacket(data, null);
+    }
+
+    @Override
+    public Packet<byte[]> decodePacket(byte[] data) {
+        return current().decodePacket(data);
+    }
+
+    @Override
+    public Packet<String> decodePacket(String data, PacketPool pool) {
+        // both versions open websockets with the same frame, and maxPayload is optional, so
+        // nothing proves version 3 here
+        return settle(true).decodePacket(data, pool);
+    }
+
+    @Override
+    public Packet<byte[]> decodePacket(byte[] data, PacketPool pool) {
+        return current().decodePacket(data, pool);
+    }
+
+    @Override
+    public Packet<ByteBuffer> decodePacket(ByteBuffer data, PacketPool pool) {
+        return current().decodePacket(data, pool);
+    }
+
+    @Override
+    public void encodePayload(Packet[] packets, Parser.EncodeCallback<byte[]> callback) throws UTF8Exception {
+        current().encodePayload(packets, callback);
+    }
+
+    @Override
+    public void decodePayload(String data, Parser.DecodePayloadCallback<String> callback) {
+        settle(data).decodePayload(data, callback);
+    }
+
+    @Override
+    public void decodePayloadAsViews(String data, Parser.DecodePayloadCallback<CharSequence> callback) {
+        settle(data).decodePayloadAsViews(data, callback);
+    }
+
+    @Override
+    public void decodePayload(byte[] data, Parser.DecodePayloadCallback callback) {
+        // only version 3 sends binary polling payloads
+        settle(false).decodePayload(data, callback);
+    }
+
+    @Override
+    public void decodeTextPayload(byte[] data, Parser.DecodePayloadCallback<String> callback) {
+        if (this.codec == null) {
+            settle(data != null && data.length > 1 && data[0] == '0' && data[1] == '{');
+        }
+        this.codec.decodeTextPayload(data, callback);
+    }
+}
@@ -12,9 +12,31 @@ public class Packet<T> {
     static final public String NOOP = "noop";
     static final public String ERROR = "error";
 
+    /*
+     * Numeric type codes. Codes from OPEN_CODE to NOOP_CODE are the ones sent on the wire;
+     * ERROR_CODE only exists on the client side.
+     */
+    static final public int UNKNOWN_CODE = -1;
+    static final public int OPEN_CODE = 0;
+    static final public int CLOSE_CODE = 1;
+    static final public int PING_CODE = 2;
+    static final public int PONG_CODE = 3;
+    static final public int MESSAGE_CODE = 4;
+    static final public int UPGRADE_CODE = 5;
+    static final public int NOOP_CODE = 6;
+    static final public int ERROR_CODE = 7;
+
+    private static final String[] TYPES = new String[] {OPEN, CLOSE, PING, PONG, MESSAGE, UPGRADE, NOOP, ERROR};
+
     public String type;
     public T data;
 
+    /*package*/ int code;
+    /*package*/ PacketPool pool;
+    /*package*/ int refCnt;
+    /*package*/ boolean pooledData;
+    /*package*/ Object leak;
+
 
     public Packet(String type) {
         this(type, null);
@@ -22,6 +44,96 @@ public class Packet<T> {
 
     public Packet(String type, T data) {
         this.type = type;
+        this.code = codeOf(type);
+        this.data = data;
+    }
+
+    public Packet(int code) {
+        this(code, null);
+    }
+
+    public Packet(int code, T data) {
+        this.type = typeOf(code);
+        this.code = this.type != null ? code : UNKNOWN_CODE;
         this.data = data;
     }
+
+    /**
+     * Returns the numeric code of this packet's type.
+     *
+     * @return the type code, or {@link #UNKNOWN_CODE}.
+     */
+    public int code() {
+        int code = this.code;
+        if (code >= 0 && TYPES[code] == this.type) return code;
+        // the type was reassigned, or is not one of the constants above
+        return this.code = codeOf(this.type);
+    }
+
+    /**
+     * Returns the numeric code of a packet type.
+     *
+     * @param type a packet type such as {@link #MESSAGE}.
+     * @return the type code, or {@link #UNKNOWN_CODE}.
+     */
+    public static int codeOf(String type) {
+        // types are almost always the constants above, so compare references first.
+        for (int i = 0; i < TYPES.length; i++) {
+            if (TYPES[i] == type) return i;
+        }
+        for (int i = 0; i < TYPES.length; i++) {
+            if (TYPES[i].equals(type)) return i;
+        }
+        return UNKNOWN_CODE;
+    }
+
+    /**
+     * Returns the packet type of a numeric code.
+     *
+     * @param code a type code such as {@link #MESSAGE_CODE}.
+     * @return the packet type, or null if the code is unknown.
+     */
+    public static String typeOf(int code) {
+        return code >= 0 && code < TYPES.length ? TYPES[code] : null;
+    }
+
+    /**
+     * Keeps a pooled packet, and its data, from being recycled until a matching
+     * {@link #release()}. Does nothing for packets not taken from a {@link PacketPool}.
+     *
+     * @return this packet.
+     * @throws IllegalStateException if the packet was already recycled.
+     */
+    public Packet<T> retain() {
+        if (this.pool != null) {
+            synchronized (this) {
+                if (this.refCnt <= 0) {
+                    throw new IllegalStateException("packet was already recycled");
+                }
+                this.refCnt++;
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Gives back one reference to a pooled packet, recycling it when none are left.
+     * Does nothing for packets not taken from a {@link PacketPool}.
+     *
+     * @return true if the packet was recycled.
+     * @throws IllegalStateException if the packet was already recycled.
+     */
+    public boolean release() {
+        PacketPool pool = this.pool;
+        if (pool == null) return false;
+
+        synchronized (this) {
+            if (this.refCnt <= 0) {
+                throw new IllegalStateException("packet was already recycled");
+            }
+            if (--this.refCnt > 0) return false;
+        }
+        pool.recycle(this);
+        return true;
+    }
 }
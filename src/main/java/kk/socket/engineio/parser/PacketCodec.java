@@ -0,0 +1,97 @@
+package kk.socket.engineio.parser;
+
+import java.nio.ByteBuffer;
+
+import kk.socket.utf8.UTF8Exception;
+
+/**
+ * Encodes and decodes packets and payloads on the wire. An instance is created per
+ * connection and only used from its event thread, so implementations may keep
+ * scratch buffers without synchronization.
+ *
+ * @see V3PacketCodec
+ */
+public interface PacketCodec {
+
+    /**
+     * Returns the protocol version sent to the server as the {@code EIO} query parameter.
+     *
+     * @return the protocol version.
+     */
+    int protocol();
+
+    /**
+     * Returns the content type of polling request bodies.
+     *
+     * @return a MIME type.
+     */
+    String payloadContentType();
+
+    /**
+     * Encodes a packet as a websocket frame, passing a String or a byte[] to the callback.
+     */
+    void encodePacket(Packet packet, Parser.EncodeCallback callback) throws UTF8Exception;
+
+    /**
+     * Decodes a websocket text frame.
+     */
+    Packet<String> decodePacket(String data);
+
+    /**
+     * Decodes a websocket binary frame.
+     */
+    Packet<byte[]> decodePacket(byte[] data);
+
+    /**
+     * Decodes a websocket text frame, taking the packet from {@code pool} if it is not null.
+     */
+    Packet<String> decodePacket(String data, PacketPool pool);
+
+    /**
+     * Decodes a websocket binary frame, taking the packet from {@code pool} if it is not null.
+     */
+    Packet<byte[]> decodePacket(byte[] data, PacketPool pool);
+
+    /**
+     * Decodes a websocket binary frame into a read-only view of {@code data}, without copying,
+     * taking the packet from {@code pool} if it is not null.
+     */
+    Packet<ByteBuffer> decodePacket(ByteBuffer data, PacketPool pool);
+
+    /**
+     * Encodes packets as the body of a polling request.
+     */
+    void encodePayload(Packet[] packets, Parser.EncodeCallback<byte[]> callback) throws UTF8Exception;
+
+    /**
+     * Decodes a polling response that was read as a String.
+     */
+    void decodePayload(String data, Parser.DecodePayloadCallback<String> callback);
+
+    /**
+     * Decodes a polling response that was read as a String, passing ASCII text data as
+     * {@link CharSequence} views of {@code data}.
+     */
+    void decodePayloadAsViews(String data, Parser.DecodePayloadCallback<CharSequence> callback);
+
+    /**
+     * Decodes a polling response with a binary content type.
+     */
+    void decodePayload(byte[] data, Parser.DecodePayloadCallback callback);
+
+    /**
+     * Decodes a polling response with a text content type from its raw UTF-8 bytes.
+     */
+    void decodeTextPayload(byte[] data, Parser.DecodePayloadCallback<String> callback);
+
+
+    public static interface Factory {
+
+        /**
+         * Creates a codec for a new connection.
+         *
+         * @return a new codec.
+         */
+        public PacketCodec create();
+    }
+}
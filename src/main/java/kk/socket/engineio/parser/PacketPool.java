@@ -0,0 +1,211 @@
+package kk.socket.engineio.parser;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Recycles {@link Packet} instances, and the binary buffers decoded into them, for
+ * high-rate message streams.
+ *
+ * <p>A pooled packet starts with one reference, owned by whoever acquired it: the
+ * transport for inbound packets, which releases it once its listeners return, and the
+ * socket for outbound packets, which releases it once the packet has been written.
+ * Code that keeps a pooled packet or its data past that point must call
+ * {@link Packet#retain()} and later {@link Packet#release()}.</p>
+ *
+ * <p>Binary buffers are only reused for messages of the same length, the common case
+ * for streams of fixed-size frames. Buffers passed in by the application are never
+ * recycled.</p>
+ *
+ * <p>With leak detection on, the pool logs the acquisition stack trace of every
+ * pooled packet that is garbage-collected without having been released. Leak detection
+ * is on by default when the {@value #LEAK_DETECTION_PROPERTY} system property is true.</p>
+ */
+public final class PacketPool {
+
+    private static final Logger logger = Logger.getLogger(PacketPool.class.getName());
+
+    public static final String LEAK_DETECTION_PROPERTY = "kk.socket.engineio.packetPool.leakDetection";
+
+    private final Packet<?>[] packets;
+    private int packetCount;
+    private final byte[][] buffers;
+    private int bufferCount;
+    private int outstanding;
+
+    private final boolean leakDetection;
+    private final ReferenceQueue<Packet> leakQueue = new ReferenceQueue<Packet>();
+    private final Set<Leak> trackers = new HashSet<Leak>();
+    private int leaks;
+
+    public PacketPool() {
+        this(256, 64);
+    }
+
+    public PacketPool(int maxPackets, int maxBuffers) {
+        this(maxPackets, maxBuffers, Boolean.getBoolean(LEAK_DETECTION_PROPERTY));
+    }
+
+    public PacketPool(int maxPackets, int maxBuffers, boolean leakDetection) {
+        this.packets = new Packet<?>[maxPackets];
+        this.buffers = new byte[maxBuffers][];
+        this.leakDetection = leakDetection;
+    }
+
+    /**
+     * Takes a packet from the pool, or creates one if the pool is empty.
+     *
+     * @param type the packet type.
+     * @param data the packet data, which the pool will not recycle.
+     * @return a packet holding one reference.
+     */
+    public <T> Packet<T> acquire(String type, T data) {
+        Packet<?> pooled = null;
+        synchronized (this) {
+            if (this.leakDetection) {
+                this.pollLeaks();
+            }
+            this.outstanding++;
+            if (this.packetCount > 0) {
+                pooled = this.packets[--this.packetCount];
+                this.packets[this.packetCount] = null;
+            }
+        }
+
+        Packet<T> packet;
+        if (pooled == null) {
+            packet = new Packet<T>(type);
+            packet.pool = this;
+        } else {
+            // recycled packets hold no data, so they can take any
+            @SuppressWarnings("unchecked")
+            Packet<T> recycled = (Packet<T>)pooled;
+            packet = recycled;
+            packet.type = type;
+            packet.code = Packet.codeOf(type);
+        }
+        packet.data = data;
+        packet.refCnt = 1;
+
+        if (this.leakDetection) {
+            Leak leak = new Leak(packet, this.leakQueue);
+            packet.leak = leak;
+            synchronized (this) {
+                this.trackers.add(leak);
+            }
+        }
+
+        return packet;
+    }
+
+    /**
+     * Stops tracking a packet that will never be released, without recycling it.
+     * Use this when a packet may still be in use elsewhere and can no longer be
+     * safely recycled.
+     *
+     * @param packet a packet acquired from this pool.
+     */
+    public void discard(Packet packet) {
+        if (packet.pool != this) return;
+
+        Leak leak;
+        synchronized (packet) {
+            if (packet.refCnt <= 0) return;
+            packet.refCnt = 0;
+            packet.pool = null;
+            leak = (Leak)packet.leak;
+            packet.leak = null;
+        }
+        synchronized (this) {
+            this.outstanding--;
+            this.untrack(leak);
+        }
+    }
+
+    /**
+     * Returns the number of packets acquired and not yet released or discarded.
+     *
+     * @return the number of outstanding packets.
+     */
+    public synchronized int outstanding() {
+        return this.outstanding;
+    }
+
+    /**
+     * Returns the number of packets found garbage-collected without having been released.
+     * Always 0 unless leak detection is on.
+     *
+     * @return the number of leaked packets.
+     */
+    public synchronized int leaks() {
+        this.pollLeaks();
+        return this.leaks;
+    }
+
+    /*package*/ byte[] acquireBuffer(int length) {
+        synchronized (this) {
+            for (int i = this.bufferCount - 1; i >= 0; i--) {
+                byte[] buffer = this.buffers[i];
+                if (buffer.length == length) {
+                    this.buffers[i] = this.buffers[--this.bufferCount];
+                    this.buffers[this.bufferCount] = null;
+                    return buffer;
+                }
+            }
+        }
+        return new byte[length];
+    }
+
+    /*package*/ void recycle(Packet<?> packet) {
+        byte[] buffer = packet.pooledData ? (byte[])packet.data : null;
+        Leak leak = (Leak)packet.leak;
+        packet.type = null;
+        packet.data = null;
+        packet.pooledData = false;
+        packet.leak = null;
+
+        synchronized (this) {
+            this.outstanding--;
+            this.untrack(leak);
+            if (this.packetCount < this.packets.length) {
+                this.packets[this.packetCount++] = packet;
+            }
+            if (buffer != null && this.bufferCount < this.buffers.length) {
+                this.buffers[this.bufferCount++] = buffer;
+            }
+        }
+    }
+
+    private void untrack(Leak leak) {
+        if (leak != null) {
+            this.trackers.remove(leak);
+            leak.clear();
+        }
+    }
+
+    private void pollLeaks() {
+        Reference<? extends Packet> ref;
+        while ((ref = this.leakQueue.poll()) != null) {
+            Leak leak = (Leak)ref;
+            if (this.trackers.remove(leak)) {
+                this.leaks++;
+                logger.log(Level.WARNING, "a pooled packet was garbage-collected without release()", leak.trace);
+            }
+        }
+    }
+
+
+    private static final class Leak extends PhantomReference<Packet> {
+
+        final Throwable trace = new Throwable("packet acquired here");
+
+        Leak(Packet packet, ReferenceQueue<Packet> queue) {
+            super(packet, queue);
+        }
+    }
+}
@@ -1,11 +1,9 @@
 package kk.socket.engineio.parser;
 
 
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.nio.charset.StandardCharsets;
 
 import kk.socket.utf8.UTF8;
 import kk.socket.utf8.UTF8Exception;
@@ -16,24 +14,19 @@ public class Parser {
 
     public static final int PROTOCOL = 3;
 
-    private static final Map<String, Integer> packets = new HashMap<String, Integer>() {{
-        put(Packet.OPEN, 0);
-        put(Packet.CLOSE, 1);
-        put(Packet.PING, 2);
-        put(Packet.PONG, 3);
-        put(Packet.MESSAGE, 4);
-        put(Packet.UPGRADE, 5);
-        put(Packet.NOOP, 6);
-    }};
+    /**
+     * Packet types indexed by their wire code.
+     */
+    private static final String[] packetslist = new String[] {
+        Packet.OPEN, Packet.CLOSE, Packet.PING, Packet.PONG, Packet.MESSAGE, Packet.UPGRADE, Packet.NOOP
+    };
 
-    private static final Map<Integer, String> packetslist = new HashMap<Integer, String>();
-    static {
-        for (Map.Entry<String, Integer> entry : packets.entrySet()) {
-            packetslist.put(entry.getValue(), entry.getKey());
-        }
-    }
+    /**
+     * Wire codes as strings, indexed by code.
+     */
+    private static final String[] encodedTypes = new String[] {"0", "1", "2", "3", "4", "5", "6"};
 
-    private static Packet<String> err = new Packet<String>(Packet.ERROR, "parser error");
+    static final Packet<String> err = new Packet<String>(Packet.ERROR, "parser error");
 
 
     private Parser() {}
@@ -53,7 +46,7 @@ public class Parser {
             return;
         }
 
-        String encoded = String.valueOf(packets.get(packet.type));
+        String encoded = encodedTypes[wireCode(packet)];
 
         if (null != packet.data) {
             encoded += utf8encode ? UTF8.encode(String.valueOf(packet.data)) : String.valueOf(packet.data);
@@ -67,7 +60,7 @@ public class Parser {
     private static void encodeByteArray(Packet<byte[]> packet, EncodeCallback<byte[]> callback) {
         byte[] data = packet.data;
         byte[] resultArray = new byte[1 + data.length];
-        resultArray[0] = packets.get(packet.type).byteValue();
+        resultArray[0] = (byte)wireCode(packet);
         System.arraycopy(data, 0, resultArray, 1, data.length);
         callback.call(resultArray);
     }
@@ -77,12 +70,7 @@ public class Parser {
     }
 
     public static Packet<String> decodePacket(String data, boolean utf8decode) {
-        int type;
-        try {
-            type = Character.getNumericValue(data.charAt(0));
-        } catch (IndexOutOfBoundsException e) {
-            type = -1;
-        }
+        int type = data.length() > 0 ? data.charAt(0) - '0' : -1;
 
         if (utf8decode) {
             try {
@@ -92,14 +80,14 @@ public class Parser {
             }
         }
 
-        if (type < 0 || type >= packetslist.size()) {
+        if (type < 0 || type >= packetslist.length) {
             return err;
         }
 
         if (data.length() > 1) {
-            return new Packet<String>(packetslist.get(type), data.substring(1));
+            return new Packet<String>(packetslist[type], data.substring(1));
         } else {
-            return new Packet<String>(packetslist.get(type));
+            return new Packet<String>(packetslist[type]);
         }
     }
 
@@ -107,172 +95,515 @@ public class Parser {
         int type = data[0];
         byte[] intArray = new byte[data.length - 1];
         System.arraycopy(data, 1, intArray, 0, intArray.length);
-        return new Packet<byte[]>(packetslist.get(type), intArray);
+        return new Packet<byte[]>(decodeType(type), intArray);
+    }
+
+    /**
+     * Decodes a text frame like {@link #decodePacket(String)}, taking the packet from
+     * {@code pool}.
+     *
+     * @param data the frame.
+     * @param pool the pool to take the packet from, or null.
+     * @return the packet; {@link #err} is never pooled.
+     */
+    public static Packet<String> decodePacket(String data, PacketPool pool) {
+        if (pool == null) {
+            return decodePacket(data);
+        }
+
+        String type = decodeType(data.length() > 0 ? data.charAt(0) - '0' : -1);
+        if (type == null) {
+            return err;
+        }
+        return pool.acquire(type, data.length() > 1 ? data.substring(1) : null);
+    }
+
+    /**
+     * Decodes a binary frame like {@link #decodePacket(byte[])}, taking the packet and
+     * its data buffer from {@code pool}.
+     *
+     * @param data the frame.
+     * @param pool the pool to take the packet from, or null.
+     * @return the packet.
+     */
+    public static Packet<byte[]> decodePacket(byte[] data, PacketPool pool) {
+        if (pool == null) {
+            return decodePacket(data);
+        }
+
+        byte[] body = pool.acquireBuffer(data.length - 1);
+        System.arraycopy(data, 1, body, 0, body.length);
+        Packet<byte[]> packet = pool.acquire(decodeType(data[0]), body);
+        packet.pooledData = true;
+        return packet;
+    }
+
+    static String decodeType(int code) {
+        return code >= 0 && code < packetslist.length ? packetslist[code] : null;
+    }
+
+    static int wireCode(Packet packet) {
+        int code = packet.code();
+        if (code < 0 || code >= packetslist.length) {
+            throw new IllegalArgumentException("Cannot encode packet type: " + packet.type);
+        }
+        return code;
     }
 
     public static void encodePayload(Packet[] packets, EncodeCallback<byte[]> callback) throws UTF8Exception {
-        if (packets.length == 0) {
-            callback.call(new byte[0]);
-            return;
+        byte[] data = new byte[encodedPayloadLength(packets)];
+        writePayload(packets, ByteBuffer.wrap(data));
+        callback.call(data);
+    }
+
+    /**
+     * Encodes packets as a binary payload straight into {@code out}, writing each
+     * length header and body exactly once.
+     *
+     * @param packets packets to encode.
+     * @param out the buffer to write to, which must have at least
+     *            {@link #encodedPayloadLength(Packet[])} bytes remaining.
+     * @throws UTF8Exception if a string packet is not valid UTF-16; nothing is written then.
+     */
+    public static void encodePayload(Packet[] packets, ByteBuffer out) throws UTF8Exception {
+        int length = encodedPayloadLength(packets);
+        if (out.remaining() < length) {
+            throw new BufferOverflowException();
         }
+        writePayload(packets, out);
+    }
 
-        final ArrayList<byte[]> results = new ArrayList<byte[]>(packets.length);
+    private static void writePayload(Packet[] payload, ByteBuffer out) throws UTF8Exception {
+        for (Packet packet : payload) {
+            int type = wireCode(packet);
+            if (packet.data instanceof byte[]) {
+                byte[] data = (byte[])packet.data;
+                writeFrameHeader(out, 1, data.length + 1);
+                out.put((byte)type);
+                out.put(data);
+            } else {
+                String data = packet.data != null ? String.valueOf(packet.data) : null;
+                writeFrameHeader(out, 0, (data != null ? utf8Length(data) : 0) + 1);
+                out.put((byte)('0' + type));
+                if (data != null) {
+                    writeUTF8(out, data);
+                }
+            }
+        }
+    }
 
+    /**
+     * Computes the exact number of bytes {@link #encodePayload(Packet[], ByteBuffer)} writes.
+     *
+     * @param packets packets to encode.
+     * @return the payload length in bytes.
+     * @throws UTF8Exception if a string packet is not valid UTF-16.
+     */
+    public static int encodedPayloadLength(Packet[] packets) throws UTF8Exception {
+        int length = 0;
         for (Packet packet : packets) {
-            encodePacket(packet, true, new EncodeCallback() {
-                @Override
-                public void call(Object packet) {
-                    if (packet instanceof String) {
-                        String encodingLength = String.valueOf(((String) packet).length());
-                        byte[] sizeBuffer = new byte[encodingLength.length() + 2];
-
-                        sizeBuffer[0] = (byte)0; // is a string
-                        for (int i = 0; i < encodingLength.length(); i ++) {
-                            sizeBuffer[i + 1] = (byte)Character.getNumericValue(encodingLength.charAt(i));
-                        }
-                        sizeBuffer[sizeBuffer.length - 1] = (byte)255;
-                        results.add(Buffer.concat(new byte[][] {sizeBuffer, stringToByteArray((String)packet)}));
-                        return;
-                    }
+            int msgLength;
+            if (packet.data instanceof byte[]) {
+                msgLength = ((byte[])packet.data).length + 1;
+            } else {
+                msgLength = (packet.data != null ? utf8Length(String.valueOf(packet.data)) : 0) + 1;
+            }
+            length += 2 + digitCount(msgLength) + msgLength;
+        }
+        return length;
+    }
 
-                    String encodingLength = String.valueOf(((byte[])packet).length);
-                    byte[] sizeBuffer = new byte[encodingLength.length() + 2];
-                    sizeBuffer[0] = (byte)1; // is binary
-                    for (int i = 0; i < encodingLength.length(); i ++) {
-                        sizeBuffer[i + 1] = (byte)Character.getNumericValue(encodingLength.charAt(i));
-                    }
-                    sizeBuffer[sizeBuffer.length - 1] = (byte)255;
-                    results.add(Buffer.concat(new byte[][] {sizeBuffer, (byte[])packet}));
-                }
-            });
+    private static void writeFrameHeader(ByteBuffer out, int kind, int msgLength) {
+        out.put((byte)kind);
+        for (int divisor = pow10(digitCount(msgLength) - 1); divisor > 0; divisor /= 10) {
+            out.put((byte)(msgLength / divisor % 10));
         }
+        out.put((byte)255);
+    }
 
-        callback.call(Buffer.concat(results.toArray(new byte[results.size()][])));
+    private static int digitCount(int value) {
+        int count = 1;
+        while (value >= 10) {
+            value /= 10;
+            count++;
+        }
+        return count;
+    }
+
+    private static int pow10(int exponent) {
+        int value = 1;
+        while (exponent-- > 0) {
+            value *= 10;
+        }
+        return value;
+    }
+
+    static int utf8Length(String string) throws UTF8Exception {
+        int length = 0;
+        for (int i = 0, l = string.length(); i < l; i++) {
+            char c = string.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (!Character.isSurrogate(c)) {
+                length += 3;
+            } else if (Character.isHighSurrogate(c) && i + 1 < l && Character.isLowSurrogate(string.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                throw new UTF8Exception(
+                        "Lone surrogate U+" + Integer.toHexString(c).toUpperCase() + " is not a scalar value");
+            }
+        }
+        return length;
+    }
+
+    static void writeUTF8(ByteBuffer out, String string) {
+        for (int i = 0, l = string.length(); i < l; i++) {
+            int codePoint = string.charAt(i);
+            if (codePoint < 0x80) {
+                out.put((byte)codePoint);
+            } else if (codePoint < 0x800) {
+                out.put((byte)(0xC0 | (codePoint >> 6)));
+                out.put((byte)(0x80 | (codePoint & 0x3F)));
+            } else if (!Character.isSurrogate((char)codePoint)) {
+                out.put((byte)(0xE0 | (codePoint >> 12)));
+                out.put((byte)(0x80 | ((codePoint >> 6) & 0x3F)));
+                out.put((byte)(0x80 | (codePoint & 0x3F)));
+            } else {
+                // surrogates have already been validated by utf8Length
+                codePoint = Character.toCodePoint((char)codePoint, string.charAt(++i));
+                out.put((byte)(0xF0 | (codePoint >> 18)));
+                out.put((byte)(0x80 | ((codePoint >> 12) & 0x3F)));
+                out.put((byte)(0x80 | ((codePoint >> 6) & 0x3F)));
+                out.put((byte)(0x80 | (codePoint & 0x3F)));
+            }
+        }
     }
 
     public static void decodePayload(String data, DecodePayloadCallback<String> callback) {
+        @SuppressWarnings("unchecked")
+        DecodePayloadCallback<Object> tempCallback = (DecodePayloadCallback)callback;
+        if (!decodePayload(data, false, tempCallback)) {
+            callback.call(err, 0, 1);
+        }
+    }
+
+    /**
+     * Decodes a text payload like {@link #decodePayload(String, DecodePayloadCallback)},
+     * but passes ASCII packet data to the callback as a {@link CharSequence} view over
+     * {@code data}, so no String is allocated for it until {@code toString()} is called.
+     *
+     * @param data the payload.
+     * @param callback invoked for each packet.
+     */
+    public static void decodePayloadAsViews(String data, DecodePayloadCallback<CharSequence> callback) {
+        @SuppressWarnings("unchecked")
+        DecodePayloadCallback<Object> tempCallback = (DecodePayloadCallback)callback;
+        if (!decodePayload(data, true, tempCallback)) {
+            callback.call(new Packet<CharSequence>(err.type, err.data), 0, 1);
+        }
+    }
+
+    /**
+     * @return false if the payload is malformed, leaving the caller to pass {@link #err}
+     *         to its callback.
+     */
+    private static boolean decodePayload(String data, boolean views, DecodePayloadCallback<Object> callback) {
         if (data == null || data.length() == 0) {
+            return false;
+        }
+
+        int i = 0;
+        int l = data.length();
+        while (i < l) {
+            long n = 0;
+            int digits = 0;
+            for (; i < l && data.charAt(i) != ':'; i++) {
+                int digit = data.charAt(i) - '0';
+                if (digit < 0 || digit > 9 || ++digits > MAX_INT_CHAR_LENGTH) {
+                    return false;
+                }
+                n = n * 10 + digit;
+            }
+            if (i == l || digits == 0 || n > l - i - 1) {
+                return false;
+            }
+            int start = i + 1;
+            i = start + (int)n;
+
+            if (n != 0) {
+                Packet packet = decodeTextPacket(data, start, i, true, views);
+                if (packet == err) {
+                    return false;
+                }
+
+                @SuppressWarnings("unchecked")
+                boolean ret = callback.call(packet, i - 1, l);
+                if (!ret) return true;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decodes the packet held in {@code data} between {@code start} and {@code end}
+     * with a single allocation for its data.
+     */
+    static Packet decodeTextPacket(String data, int start, int end, boolean utf8decode, boolean view) {
+        int type = data.charAt(start) - '0';
+        if (type < 0 || type >= packetslist.length) {
+            return err;
+        }
+        if (end - start == 1) {
+            return new Packet<String>(packetslist[type]);
+        }
+
+        start++;
+        if (view && isAscii(data, start, end)) {
+            return new Packet<CharSequence>(packetslist[type], new StringView(data, start, end));
+        }
+        if (!utf8decode) {
+            return new Packet<String>(packetslist[type], data.substring(start, end));
+        }
+        try {
+            return new Packet<String>(packetslist[type], UTF8.decode(data, start, end - start));
+        } catch (UTF8Exception e) {
+            return err;
+        }
+    }
+
+    private static boolean isAscii(String data, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (data.charAt(i) >= 0x80) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Decodes a text payload from the raw bytes of a polling response, without first
+     * decoding the response into a String.
+     *
+     * <p>A text payload is a string whose chars are UTF-8 bytes (see {@link UTF8}),
+     * sent as UTF-8 itself, and its frame lengths count those inner bytes. Both layers
+     * are decoded here, straight into the packet's final String.</p>
+     *
+     * @param data the response body, which must be UTF-8.
+     * @param callback invoked for each packet.
+     */
+    public static void decodeTextPayload(byte[] data, DecodePayloadCallback<String> callback) {
+        if (data == null || data.length == 0) {
             callback.call(err, 0, 1);
             return;
         }
 
-        StringBuilder length = new StringBuilder();
-        for (int i = 0, l = data.length(); i < l; i++) {
-            char chr = data.charAt(i);
-
-            if (':' != chr) {
-                length.append(chr);
-            } else {
-                int n;
-                try {
-                    n = Integer.parseInt(length.toString());
-                } catch (NumberFormatException e) {
+        byte[] scratch = null;
+        int i = 0;
+        int l = data.length;
+        while (i < l) {
+            long n = 0;
+            int digits = 0;
+            for (; i < l && data[i] != ':'; i++) {
+                int digit = data[i] - '0';
+                if (digit < 0 || digit > 9 || ++digits > MAX_INT_CHAR_LENGTH) {
                     callback.call(err, 0, 1);
                     return;
                 }
+                n = n * 10 + digit;
+            }
+            // inner bytes take at least one outer byte each
+            if (i == l || digits == 0 || n > l - i - 1) {
+                callback.call(err, 0, 1);
+                return;
+            }
+            int start = ++i;
+            int msgLength = (int)n;
 
-                String msg;
-                try {
-                    msg = data.substring(i + 1, i + 1 + n);
-                } catch (IndexOutOfBoundsException e) {
+            // unwrap the outer UTF-8 layer, copying to scratch only once a non-ASCII byte shows up
+            boolean ascii = true;
+            for (int k = 0; k < msgLength; k++) {
+                if (i >= l) {
                     callback.call(err, 0, 1);
                     return;
                 }
-
-                if (msg.length() != 0) {
-                    Packet<String> packet = decodePacket(msg, true);
-                    if (err.type.equals(packet.type) && err.data.equals(packet.data)) {
-                        callback.call(err, 0, 1);
-                        return;
+                byte b = data[i];
+                if (b >= 0) {
+                    if (!ascii) scratch[k] = b;
+                    i++;
+                    continue;
+                }
+                if ((b != (byte)0xC2 && b != (byte)0xC3) || i + 1 >= l || (data[i + 1] & 0xC0) != 0x80) {
+                    callback.call(err, 0, 1);
+                    return;
+                }
+                if (ascii) {
+                    if (scratch == null || scratch.length < msgLength) {
+                        scratch = new byte[msgLength];
                     }
+                    System.arraycopy(data, start, scratch, 0, k);
+                    ascii = false;
+                }
+                scratch[k] = (byte)(((b & 0x1F) << 6) | (data[i + 1] & 0x3F));
+                i += 2;
+            }
 
-                    boolean ret = callback.call(packet, i + n, l);
-                    if (!ret) return;
+            if (msgLength != 0) {
+                Packet<String> packet = ascii ?
+                        decodeTextPacket(data, start, msgLength) : decodeTextPacket(scratch, 0, msgLength);
+                if (packet == err) {
+                    callback.call(err, 0, 1);
+                    return;
                 }
 
-                i += n;
-                length = new StringBuilder();
+                boolean ret = callback.call(packet, i - 1, l);
+                if (!ret) return;
             }
         }
+    }
 
-        if (length.length() > 0) {
-            callback.call(err, 0, 1);
+    private static Packet<String> decodeTextPacket(byte[] bytes, int offset, int length) {
+        int type = bytes[offset] - '0';
+        if (type < 0 || type >= packetslist.length) {
+            return err;
+        }
+        if (length == 1) {
+            return new Packet<String>(packetslist[type]);
+        }
+
+        try {
+            return new Packet<String>(packetslist[type], UTF8.decode(bytes, offset + 1, length - 1));
+        } catch (UTF8Exception e) {
+            return err;
         }
     }
 
     public static void decodePayload(byte[] data, DecodePayloadCallback callback) {
-        ByteBuffer bufferTail = ByteBuffer.wrap(data);
-        List<Object> buffers = new ArrayList<Object>();
-
-        while (bufferTail.capacity() > 0) {
-            StringBuilder strLen = new StringBuilder();
-            boolean isString = (bufferTail.get(0) & 0xFF) == 0;
-            boolean numberTooLong = false;
-            for (int i = 1; ; i++) {
-                int b = bufferTail.get(i) & 0xFF;
-                if (b == 255) break;
-                // supports only integer
-                if (strLen.length() > MAX_INT_CHAR_LENGTH) {
-                    numberTooLong = true;
-                    break;
-                }
-                strLen.append(b);
-            }
-            if (numberTooLong) {
-                @SuppressWarnings("unchecked")
-                DecodePayloadCallback<String> tempCallback = callback;
-                tempCallback.call(err, 0, 1);
-                return;
-            }
-            bufferTail.position(strLen.length() + 1);
-            bufferTail = bufferTail.slice();
+        decodePayload(ByteBuffer.wrap(data), false, callback);
+    }
+
+    /**
+     * Decodes a binary payload without copying binary frames. Binary packets are
+     * passed to the callback as read-only {@link ByteBuffer} slices of {@code data},
+     * which stay valid only as long as the caller keeps the buffer's contents intact.
+     *
+     * @param data the payload, read from its position to its limit.
+     * @param callback invoked for each packet as soon as it is framed.
+     */
+    public static void decodePayload(ByteBuffer data, DecodePayloadCallback callback) {
+        decodePayload(data, true, callback);
+    }
+
+    private static void decodePayload(ByteBuffer data, boolean slices, DecodePayloadCallback callback) {
+        // only the length headers are walked up front, so that the total is known
+        // without materializing any frame.
+        int total = countFrames(data);
+        if (total < 0) {
+            @SuppressWarnings("unchecked")
+            DecodePayloadCallback<String> tempCallback = callback;
+            tempCallback.call(err, 0, 1);
+            return;
+        }
 
-            int msgLength = Integer.parseInt(strLen.toString());
+        int position = data.position();
+        for (int i = 0; i < total; i++) {
+            boolean isString = data.get(position++) == 0;
+            int msgLength = 0;
+            byte b;
+            while ((b = data.get(position++)) != (byte)255) {
+                msgLength = msgLength * 10 + b;
+            }
 
-            bufferTail.position(1);
-            bufferTail.limit(msgLength + 1);
-            byte[] msg = new byte[bufferTail.remaining()];
-            bufferTail.get(msg);
+            Packet packet;
             if (isString) {
-                buffers.add(byteArrayToString(msg));
+                packet = decodePacket(latin1String(data, position, msgLength), true);
+            } else if (slices) {
+                packet = decodePacket(slice(data, position, msgLength));
             } else {
-                buffers.add(msg);
+                byte[] msg = new byte[msgLength - 1];
+                slice(data, position + 1, msg.length).get(msg);
+                packet = new Packet<byte[]>(decodeType(data.get(position)), msg);
             }
-            bufferTail.clear();
-            bufferTail.position(msgLength + 1);
-            bufferTail = bufferTail.slice();
+            position += msgLength;
+
+            @SuppressWarnings("unchecked")
+            boolean ret = callback.call(packet, i, total);
+            if (!ret) return;
         }
+    }
 
-        int total = buffers.size();
-        for (int i = 0; i < total; i++) {
-            Object buffer = buffers.get(i);
-            if (buffer instanceof String) {
-                @SuppressWarnings("unchecked")
-                DecodePayloadCallback<String> tempCallback = callback;
-                tempCallback.call(decodePacket((String)buffer, true), i, total);
-            } else if (buffer instanceof byte[]) {
-                @SuppressWarnings("unchecked")
-                DecodePayloadCallback<byte[]> tempCallback = callback;
-                tempCallback.call(decodePacket((byte[])buffer), i, total);
+    /**
+     * Decodes a binary packet as a read-only view of {@code data}, without copying.
+     *
+     * @param data the encoded packet, read from its position to its limit.
+     * @return a packet whose data shares content with {@code data}.
+     */
+    public static Packet<ByteBuffer> decodePacket(ByteBuffer data) {
+        return decodePacket(data, null);
+    }
+
+    /**
+     * Decodes a binary packet like {@link #decodePacket(ByteBuffer)}, taking the packet
+     * from {@code pool}.
+     *
+     * @param data the encoded packet, read from its position to its limit.
+     * @param pool the pool to take the packet from, or null.
+     * @return a packet whose data shares content with {@code data}.
+     */
+    public static Packet<ByteBuffer> decodePacket(ByteBuffer data, PacketPool pool) {
+        String type = decodeType(data.get(data.position()));
+        ByteBuffer body = data.duplicate();
+        body.position(data.position() + 1);
+        body = data.isReadOnly() ? body.slice() : body.slice().asReadOnlyBuffer();
+        return pool != null ? pool.acquire(type, body) : new Packet<ByteBuffer>(type, body);
+    }
+
+    /**
+     * Validates the framing of a binary payload and counts its frames.
+     *
+     * @return the number of frames, or -1 if the payload is malformed.
+     */
+    private static int countFrames(ByteBuffer data) {
+        int position = data.position();
+        int limit = data.limit();
+        int total = 0;
+        while (position < limit) {
+            boolean isString = data.get(position++) == 0;
+            long msgLength = 0;
+            int digits = 0;
+            for (;;) {
+                if (position >= limit) return -1;
+                int b = data.get(position++) & 0xFF;
+                if (b == 255) break;
+                // supports only integer
+                if (b > 9 || ++digits > MAX_INT_CHAR_LENGTH) return -1;
+                msgLength = msgLength * 10 + b;
             }
+            if (digits == 0 || msgLength > limit - position || (!isString && msgLength == 0)) {
+                return -1;
+            }
+            position += (int)msgLength;
+            total++;
         }
+        return total;
     }
 
-    private static String byteArrayToString(byte[] bytes) {
-        StringBuilder builder = new StringBuilder();
-        for (byte b : bytes) {
-            builder.appendCodePoint(b & 0xFF);
-        }
-        return builder.toString();
+    private static ByteBuffer slice(ByteBuffer data, int offset, int length) {
+        ByteBuffer slice = data.duplicate();
+        slice.limit(offset + length);
+        slice.position(offset);
+        return slice.slice();
     }
 
-    private static byte[] stringToByteArray(String string) {
-        int len = string.length();
-        byte[] bytes = new byte[len];
-        for (int i = 0; i < len; i++) {
-            bytes[i] = (byte)Character.codePointAt(string, i);
+    private static String latin1String(ByteBuffer data, int offset, int length) {
+        if (data.hasArray()) {
+            return new String(data.array(), data.arrayOffset() + offset, length, StandardCharsets.ISO_8859_1);
         }
-        return bytes;
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = data.get(offset + i);
+        }
+        return new String(bytes, StandardCharsets.ISO_8859_1);
     }
 
     public static interface EncodeCallback<T> {
@@ -287,31 +618,3 @@ public class Parser {
     }
 }
 
-
-class Buffer {
-
-    private Buffer() {}
-
-    public static byte[] concat(byte[][] list) {
-        int length = 0;
-        for (byte[] buf : list) {
-            length += buf.length;
-        }
-        return concat(list, length);
-    }
-
-    public static byte[] concat(byte[][] list, int length) {
-        if (list.length == 0) {
-            return new byte[0];
-        } else if (list.length == 1) {
-            return list[0];
-        }
-
-        ByteBuffer buffer = ByteBuffer.allocate(length);
-        for (byte[] buf : list) {
-            buffer.put(buf);
-        }
-
-        return buffer.array();
-    }
-}
@@ -0,0 +1,48 @@
+package kk.socket.engineio.parser;
+
+/**
+ * A read-only window over part of a String. The substring is only allocated
+ * the first time {@link #toString()} is called, and then reused.
+ */
+/*package*/ final class StringView implements CharSequence {
+
+    private final String source;
+    private final int start;
+    private final int end;
+    private String string;
+
+    /*package*/ StringView(String source, int start, int end) {
+        this.source = source;
+        this.start = start;
+        this.end = end;
+    }
+
+    @Override
+    public int length() {
+        return this.end - this.start;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= this.length()) {
+            throw new IndexOutOfBoundsException("index: " + index + ", length: " + this.length());
+        }
+        return this.source.charAt(this.start + index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > this.length() || start > end) {
+            throw new IndexOutOfBoundsException("start: " + start + ", end: " + end + ", length: " + this.length());
+        }
+        return new StringView(this.source, this.start + start, this.start + end);
+    }
+
+    @Override
+    public String toString() {
+        if (this.string == null) {
+            this.string = this.source.substring(this.start, this.end);
+        }
+        return this.string;
+    }
+}
@@ -0,0 +1,96 @@
+package kk.socket.engineio.parser;
+
+import java.nio.ByteBuffer;
+
+import kk.socket.utf8.UTF8Exception;
+
+/**
+ * The engine.io protocol version 3 format, as implemented by {@link Parser}.
+ */
+public class V3PacketCodec implements PacketCodec {
+
+    public static final PacketCodec.Factory FACTORY = new PacketCodec.Factory() {
+        @Override
+        public PacketCodec create() {
+            return new V3PacketCodec();
+        }
+    };
+
+    private static final String CONTENT_TYPE = "application/octet-stream";
+
+    @Override
+    public int protocol() {
+        return Parser.PROTOCOL;
+    }
+
+    @Override
+    public String payloadContentType() {
+        return CONTENT_TYPE;
+    }
+
+    @Override
+    public void encodePacket(Packet packet, Parser.EncodeCallback callback) throws UTF8Exception {
+        if (packet instanceof EncodedPacket) {
+            @SuppressWarnings("unchecked")
+            Parser.EncodeCallback<Object> tempCallback = callback;
+            tempCallback.call(((EncodedPacket)packet).frame(this));
+            return;
+        }
+        Parser.encodePacket(packet, callback);
+    }
+
+    @Override
+    public Packet<String> decodePacket(String data) {
+        return Parser.decodePacket(data);
+    }
+
+    @Override
+    public Packet<byte[]> decodePacket(byte[] data) {
+        return Parser.decodePacket(data);
+    }
+
+    @Override
+    public Packet<String> decodePacket(String data, PacketPool pool) {
+        return Parser.decodePacket(data, pool);
+    }
+
+    @Override
+    public Packet<byte[]> decodePacket(byte[] data, PacketPool pool) {
+        return Parser.decodePacket(data, pool);
+    }
+
+    @Override
+    public Packet<ByteBuffer> decodePacket(ByteBuffer data, PacketPool pool) {
+        return Parser.decodePacket(data, pool);
+    }
+
+    @Override
+    public void encodePayload(Packet[] packets, Parser.EncodeCallback<byte[]> callback) throws UTF8Exception {
+        if (EncodedPacket.contains(packets)) {
+            // frames are self-delimiting, so cached ones can be laid back to back
+            callback.call(EncodedPacket.joinPayloads(this, packets, -1));
+            return;
+        }
+        Parser.encodePayload(packets, callback);
+    }
+
+    @Override
+    public void decodePayload(String data, Parser.DecodePayloadCallback<String> callback) {
+        Parser.decodePayload(data, callback);
+    }
+
+    @Override
+    public void decodePayloadAsViews(String data, Parser.DecodePayloadCallback<CharSequence> callback) {
+        Parser.decodePayloadAsViews(data, callback);
+    }
+
+    @Override
+    public void decodePayload(byte[] data, Parser.DecodePayloadCallback callback) {
+        Parser.decodePayload(data, callback);
+    }
+
+    @Override
+    public void decodeTextPayload(byte[] data, Parser.DecodePayloadCallback<String> callback) {
+        Parser.decodeTextPayload(data, callback);
+    }
+}
@@ -0,0 +1,264 @@
+package kk.socket.engineio.parser;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+
+import kk.socket.utf8.UTF8;
+import kk.socket.utf8.UTF8Exception;
+
+/**
+ * The engine.io protocol version 4 format.
+ *
+ * <p>Polling payloads are plain UTF-8 packets separated by the record separator
+ * (0x1E), with binary packets sent as "b" followed by their base64 encoding. Websocket
+ * binary frames carry message data as is. Payloads may therefore contain binary
+ * packets even when decoded from a String.</p>
+ */
+public class V4PacketCodec implements PacketCodec {
+
+    public static final int PROTOCOL = 4;
+
+    public static final PacketCodec.Factory FACTORY = new PacketCodec.Factory() {
+        @Override
+        public PacketCodec create() {
+            return new V4PacketCodec();
+        }
+    };
+
+    private static final char SEPARATOR = '\u001e';
+    private static final char BASE64_PREFIX = 'b';
+    private static final String CONTENT_TYPE = "text/plain;charset=UTF-8";
+
+    @Override
+    public int protocol() {
+        return PROTOCOL;
+    }
+
+    @Override
+    public String payloadContentType() {
+        return CONTENT_TYPE;
+    }
+
+    @Override
+    public void encodePacket(Packet packet, Parser.EncodeCallback callback) throws UTF8Exception {
+        if (packet instanceof EncodedPacket) {
+            @SuppressWarnings("unchecked")
+            Parser.EncodeCallback<Object> tempCallback = callback;
+            tempCallback.call(((EncodedPacket)packet).frame(this));
+            return;
+        }
+        int type = Parser.wireCode(packet);
+        if (packet.data instanceof byte[]) {
+            @SuppressWarnings("unchecked")
+            Parser.EncodeCallback<byte[]> tempCallback = callback;
+            tempCallback.call((byte[])packet.data);
+            return;
+        }
+
+        String encoded = String.valueOf((char)('0' + type));
+        if (packet.data != null) {
+            encoded += String.valueOf(packet.data);
+        }
+        @SuppressWarnings("unchecked")
+        Parser.EncodeCallback<String> tempCallback = callback;
+        tempCallback.call(encoded);
+    }
+
+    @Override
+    public Packet<String> decodePacket(String data) {
+        int type = data.length() > 0 ? data.charAt(0) - '0' : -1;
+        String packetType = Parser.decodeType(type);
+        if (packetType == null) {
+            return Parser.err;
+        }
+        return data.length() > 1 ? new Packet<String>(packetType, data.substring(1)) : new Packet<String>(packetType);
+    }
+
+    @Override
+    public Packet<byte[]> decodePacket(byte[] data) {
+        return new Packet<byte[]>(Packet.MESSAGE, data);
+    }
+
+    @Override
+    public Packet<String> decodePacket(String data, PacketPool pool) {
+        return Parser.decodePacket(data, pool);
+    }
+
+    @Override
+    public Packet<byte[]> decodePacket(byte[] data, PacketPool pool) {
+        // the frame itself is the data, so only the packet comes from the pool
+        return pool != null ? pool.acquire(Packet.MESSAGE, data) : decodePacket(data);
+    }
+
+    @Override
+    public Packet<ByteBuffer> decodePacket(ByteBuffer data, PacketPool pool) {
+        ByteBuffer body = data.isReadOnly() ? data.slice() : data.slice().asReadOnlyBuffer();
+        return pool != null ? pool.acquire(Packet.MESSAGE, body) : new Packet<ByteBuffer>(Packet.MESSAGE, body);
+    }
+
+    @Override
+    public void encodePayload(Packet[] packets, Parser.EncodeCallback<byte[]> callback) throws UTF8Exception {
+        if (EncodedPacket.contains(packets)) {
+            callback.call(EncodedPacket.joinPayloads(this, packets, SEPARATOR));
+            return;
+        }
+        int length = Math.max(0, packets.length - 1);
+        for (Packet packet : packets) {
+            if (packet.data instanceof byte[]) {
+                length += 1 + (((byte[])packet.data).length + 2) / 3 * 4;
+            } else {
+                length += 1 + (packet.data != null ? Parser.utf8Length(String.valueOf(packet.data)) : 0);
+            }
+        }
+
+        ByteBuffer out = ByteBuffer.allocate(length);
+        for (int i = 0; i < packets.length; i++) {
+            Packet packet = packets[i];
+            if (i > 0) {
+                out.put((byte)SEPARATOR);
+            }
+            if (packet.data instanceof byte[]) {
+                out.put((byte)BASE64_PREFIX);
+                out.put(Base64.getEncoder().encode((byte[])packet.data));
+            } else {
+                out.put((byte)('0' + Parser.wireCode(packet)));
+                if (packet.data != null) {
+                    Parser.writeUTF8(out, String.valueOf(packet.data));
+                }
+            }
+        }
+        callback.call(out.array());
+    }
+
+    @Override
+    public void decodePayload(String data, Parser.DecodePayloadCallback<String> callback) {
+        @SuppressWarnings("unchecked")
+        Parser.DecodePayloadCallback<Object> tempCallback = (Parser.DecodePayloadCallback)callback;
+        if (!this.decodePayload(data, false, tempCallback)) {
+            callback.call(Parser.err, 0, 1);
+        }
+    }
+
+    @Override
+    public void decodePayloadAsViews(String data, Parser.DecodePayloadCallback<CharSequence> callback) {
+        @SuppressWarnings("unchecked")
+        Parser.DecodePayloadCallback<Object> tempCallback = (Parser.DecodePayloadCallback)callback;
+        if (!this.decodePayload(data, true, tempCallback)) {
+            callback.call(new Packet<CharSequence>(Parser.err.type, Parser.err.data), 0, 1);
+        }
+    }
+
+    /**
+     * @return false if the payload is malformed.
+     */
+    private boolean decodePayload(String data, boolean views, Parser.DecodePayloadCallback<Object> callback) {
+        if (data == null || data.length() == 0) {
+            return false;
+        }
+
+        int total = 1;
+        for (int i = data.indexOf(SEPARATOR); i >= 0; i = data.indexOf(SEPARATOR, i + 1)) {
+            total++;
+        }
+
+        int start = 0;
+        for (int i = 0; i < total; i++) {
+            int end = data.indexOf(SEPARATOR, start);
+            if (end < 0) {
+                end = data.length();
+            }
+
+            Packet packet;
+            if (end > start && data.charAt(start) == BASE64_PREFIX) {
+                try {
+                    packet = new Packet<byte[]>(Packet.MESSAGE, Base64.getDecoder().decode(data.substring(start + 1, end)));
+                } catch (IllegalArgumentException e) {
+                    packet = Parser.err;
+                }
+            } else {
+                packet = end > start ? Parser.decodeTextPacket(data, start, end, false, views) : Parser.err;
+            }
+            if (packet == Parser.err) {
+                return false;
+            }
+
+            @SuppressWarnings("unchecked")
+            boolean ret = callback.call(packet, i, total);
+            if (!ret) return true;
+            start = end + 1;
+        }
+        return true;
+    }
+
+    @Override
+    public void decodePayload(byte[] data, Parser.DecodePayloadCallback callback) {
+        // servers never send binary polling payloads in this version
+        @SuppressWarnings("unchecked")
+        Parser.DecodePayloadCallback<String> tempCallback = callback;
+        decodeTextPayload(data, tempCallback);
+    }
+
+    @Override
+    public void decodeTextPayload(byte[] data, Parser.DecodePayloadCallback<String> callback) {
+        @SuppressWarnings("unchecked")
+        Parser.DecodePayloadCallback<Object> tempCallback = (Parser.DecodePayloadCallback)callback;
+        if (data == null || data.length == 0) {
+            callback.call(Parser.err, 0, 1);
+            return;
+        }
+
+        int total = 1;
+        for (byte b : data) {
+            if (b == SEPARATOR) total++;
+        }
+
+        int start = 0;
+        for (int i = 0; i < total; i++) {
+            int end = start;
+            while (end < data.length && data[end] != SEPARATOR) {
+                end++;
+            }
+
+            Packet packet = decodePacket(data, start, end - start);
+            if (packet == Parser.err) {
+                callback.call(Parser.err, 0, 1);
+                return;
+            }
+
+            @SuppressWarnings("unchecked")
+            boolean ret = tempCallback.call(packet, i, total);
+            if (!ret) return;
+            start = end + 1;
+        }
+    }
+
+    private static Packet decodePacket(byte[] data, int offset, int length) {
+        if (length == 0) {
+            return Parser.err;
+        }
+
+        if (data[offset] == BASE64_PREFIX) {
+            try {
+                ByteBuffer decoded = Base64.getDecoder().decode(ByteBuffer.wrap(data, offset + 1, length - 1));
+                byte[] body = new byte[decoded.remaining()];
+                decoded.get(body);
+                return new Packet<byte[]>(Packet.MESSAGE, body);
+            } catch (IllegalArgumentException e) {
+                return Parser.err;
+            }
+        }
+
+        String type = Parser.decodeType(data[offset] - '0');
+        if (type == null) {
+            return Parser.err;
+        }
+        if (length == 1) {
+            return new Packet<String>(type);
+        }
+        try {
+            return new Packet<String>(type, UTF8.decode(data, offset + 1, length - 1));
+        } catch (UTF8Exception e) {
+            return Parser.err;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package kk.socket.thread;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One thread of an {@link EventLoopGroup}. It runs the events of every socket pinned to
+ * it, in submission order, and can also run delayed tasks on that same thread.
+ */
+public final class EventLoop extends EventThreadHelper.ExecutorServiceHelper implements ScheduledExecutorService {
+
+    /*package*/ EventLoop(final ThreadFactory threadFactory) {
+        super(new ScheduledThreadPoolExecutor(1));
+        ScheduledThreadPoolExecutor executor = this.scheduler();
+        // delayed tasks are often cancelled long before they are due
+        executor.setRemoveOnCancelPolicy(true);
+        executor.setThreadFactory(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = threadFactory.newThread(runnable);
+                EventLoop.this.thread = thread;
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Whether the calling thread is this loop's thread.
+     */
+    public boolean inEventLoop() {
+        return this.thread == Thread.currentThread();
+    }
+
+    private ScheduledThreadPoolExecutor scheduler() {
+        return (ScheduledThreadPoolExecutor)this.getExecutor();
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+        return this.scheduler().schedule(command, delay, unit);
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+        return this.scheduler().schedule(callable, delay, unit);
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+        return this.scheduler().scheduleAtFixedRate(command, initialDelay, period, unit);
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+        return this.scheduler().scheduleWithFixedDelay(command, initialDelay, delay, unit);
+    }
+}
@@ -0,0 +1,94 @@
+package kk.socket.thread;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A fixed set of {@link EventLoop}s shared by many sockets. Each socket is pinned to one
+ * loop for its whole life, so its events keep their order, while the number of threads
+ * stays the same however many sockets are open.
+ *
+ * <pre>
+ * EventLoopGroup group = new EventLoopGroup(4);
+ * Socket.Options opts = new Socket.Options();
+ * opts.eventLoopGroup = group;
+ * ...
+ * group.shutdown();
+ * </pre>
+ *
+ * <p>Closing a socket leaves its loop running; shut the group down once all of its
+ * sockets are closed. Loop threads are daemon threads if the thread creating the group
+ * is one, whichever thread first submits to them.</p>
+ */
+public class EventLoopGroup {
+
+    private final EventLoop[] loops;
+
+    /**
+     * Creates a group with one loop per available processor.
+     */
+    public EventLoopGroup() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public EventLoopGroup(int nThreads) {
+        if (nThreads <= 0) {
+            throw new IllegalArgumentException("nThreads must be positive: " + nThreads);
+        }
+        final boolean daemon = Thread.currentThread().isDaemon();
+        ThreadFactory threadFactory = new EventThreadHelper.NamedThreadFactory("eventLoopGroup", "eventLoop") {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = super.newThread(r);
+                // loops start their thread on first use, which may be on any thread
+                t.setDaemon(daemon);
+                return t;
+            }
+        };
+        this.loops = new EventLoop[nThreads];
+        for (int i = 0; i < nThreads; i++) {
+            this.loops[i] = new EventLoop(threadFactory);
+        }
+    }
+
+    /**
+     * Returns the loop a key is pinned to. The same key always gets the same loop.
+     *
+     * @param key usually the socket.
+     * @return a loop of this group.
+     */
+    public EventLoop next(Object key) {
+        int h = System.identityHashCode(key);
+        // spread the high bits, as identity hashes tend to share their low ones
+        h ^= h >>> 16;
+        return this.loops[(h & Integer.MAX_VALUE) % this.loops.length];
+    }
+
+    public int size() {
+        return this.loops.length;
+    }
+
+    /**
+     * Stops accepting tasks; tasks already submitted still run.
+     */
+    public void shutdown() {
+        for (EventLoop loop : this.loops) {
+            loop.shutdown();
+        }
+    }
+
+    public boolean isShutdown() {
+        for (EventLoop loop : this.loops) {
+            if (!loop.isShutdown()) return false;
+        }
+        return true;
+    }
+
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (EventLoop loop : this.loops) {
+            if (!loop.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) return false;
+        }
+        return true;
+    }
+}
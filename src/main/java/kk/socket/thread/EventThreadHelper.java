@@ -19,6 +19,8 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -146,11 +148,48 @@ public class EventThreadHelper {
 		return new ExecutorServiceHelper(executorService);
 	}
 
+	// the service whose task the current thread is running
+	private static final ThreadLocal<ExecutorService> CURRENT = new ThreadLocal<ExecutorService>();
+
+	private static final ThreadFactory VIRTUAL_THREAD_FACTORY = newVirtualThreadFactory("socketPool-virtual-eventThread-");
+
+	/**
+	 * Whether the running JVM has virtual threads, which is the case from JDK 21 on.
+	 */
+	public static boolean isVirtualThreadSupported() {
+		return VIRTUAL_THREAD_FACTORY != null;
+	}
+
+	/**
+	 * Creates a loop for one socket that runs its events on a virtual thread,
+	 * so mostly idle sockets do not each hold a platform thread.
+	 *
+	 * @throws UnsupportedOperationException before JDK 21.
+	 */
+	public static EventLoop newVirtualThreadLoop() {
+		if (VIRTUAL_THREAD_FACTORY == null) {
+			throw new UnsupportedOperationException("virtual threads need JDK 21 or later");
+		}
+		return new EventLoop(VIRTUAL_THREAD_FACTORY);
+	}
+
+	private static ThreadFactory newVirtualThreadFactory(String namePrefix) {
+		// Thread.ofVirtual().name(namePrefix, 1).factory(), looked up reflectively to keep Java 8 compatibility
+		try {
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+			builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 1L);
+			return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+		} catch (ReflectiveOperationException e) {
+			return null;
+		}
+	}
+
 	public static void exec(Runnable task, ExecutorService service) {
 		if (service.isShutdown() || service.isTerminated()) {
 			task.run(); // run directly
 		} else {
-			if (((ExecutorServiceHelper) service).thread == Thread.currentThread()) {
+			if (isCurrent(service)) {
 				task.run();
 			} else {
 				nextTick(task, service);
@@ -158,17 +197,95 @@ public class EventThreadHelper {
 		}
 	}
 
+	/**
+	 * Whether the calling thread is running a task of the given service, in which case
+	 * {@link #exec} runs tasks for that service inline. Works for any service whose tasks
+	 * were queued by {@link #nextTick}, and for threads of an {@link ExecutorServiceHelper}.
+	 */
+	public static boolean isCurrent(ExecutorService service) {
+		if (CURRENT.get() == service) {
+			return true;
+		}
+		return service instanceof ExecutorServiceHelper
+				&& ((ExecutorServiceHelper) service).thread == Thread.currentThread();
+	}
+
+	/**
+	 * Marks the calling thread as running tasks of the given service.
+	 *
+	 * @return the previous owner, to pass to {@link #exit}.
+	 */
+	/*package*/ static ExecutorService enter(ExecutorService service) {
+		ExecutorService previous = CURRENT.get();
+		CURRENT.set(service);
+		return previous;
+	}
+
+	/*package*/ static void exit(ExecutorService previous) {
+		if (previous == null) {
+			CURRENT.remove();
+		} else {
+			CURRENT.set(previous);
+		}
+	}
+
 	public static void nextTick(Runnable task, ExecutorService service) {
 		if (service.isShutdown() || service.isTerminated()) {
 			CompletableFuture.runAsync(task);
+		} else if (service instanceof SerialExecutor) {
+			// logs exceptions itself
+			service.execute(task);
 		} else {
-			CompletableFuture.runAsync(() -> task.run(), service).exceptionally((t) -> {
-				logger.log(Level.SEVERE, "task threw exception", t);
-				return null;
+			service.execute(() -> {
+				ExecutorService previous = enter(service);
+				try {
+					task.run();
+				} catch (Throwable t) {
+					logger.log(Level.SEVERE, "task threw exception", t);
+				} finally {
+					exit(previous);
+				}
 			});
 		}
 	}
 
+	/**
+	 * Runs a task on the given service after a delay. An {@link EventLoop} schedules it itself;
+	 * other services are handed it by a timer thread shared by all of them.
+	 *
+	 * @return a future to cancel the task with.
+	 */
+	public static ScheduledFuture<?> schedule(Runnable task, long delay, TimeUnit unit, ExecutorService service) {
+		if (service instanceof EventLoop) {
+			return ((EventLoop) service).schedule(() -> {
+				try {
+					task.run();
+				} catch (Throwable t) {
+					logger.log(Level.SEVERE, "task threw exception", t);
+				}
+			}, delay, unit);
+		}
+		return DelayedTasks.TIMER.schedule(() -> nextTick(task, service), delay, unit);
+	}
+
+	private static final class DelayedTasks {
+
+		static final ScheduledThreadPoolExecutor TIMER = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+			private final ThreadFactory factory = new NamedThreadFactory("socketPool", "delayedTasks");
+
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = this.factory.newThread(runnable);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+
+		static {
+			TIMER.setRemoveOnCancelPolicy(true);
+		}
+	}
+
 	public static void shutdownWithTimeout(ExecutorService service, long timeout, TimeUnit unit) {
 		if (service.isShutdown() || service.isTerminated()) return;
 
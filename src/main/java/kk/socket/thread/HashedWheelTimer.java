@@ -0,0 +1,292 @@
+package kk.socket.thread;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A timer for many coarse, frequently pushed-back timeouts, such as heartbeats, shared by
+ * any number of sockets on one daemon thread.
+ *
+ * <p>Timeouts are hashed into a ring of buckets, one per tick. Each tick the worker thread
+ * visits one bucket and runs the timeouts that are due. A timeout whose deadline was
+ * pushed back with {@link Timeout#rearm} is only moved to its new bucket when its old one
+ * comes up, so rearming costs a field write rather than a queue update. Tasks run on the
+ * worker thread and should hand real work to another executor.</p>
+ */
+public class HashedWheelTimer {
+
+    private static final Logger logger = Logger.getLogger(HashedWheelTimer.class.getName());
+
+    private static final int INIT = 0;
+    private static final int STARTED = 1;
+    private static final int STOPPED = 2;
+
+    private final long tickNanos;
+    private final Timeout[] wheel;
+    private final int mask;
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<Timeout>();
+    private final Thread worker;
+    private final Object lock = new Object();
+    private volatile int state = INIT;
+    private volatile long startTime;
+
+    // worker thread only
+    private long tick;
+    private final List<Timeout> pushedBack = new ArrayList<Timeout>();
+
+    /**
+     * Creates a timer ticking every 100 milliseconds, with 512 buckets.
+     */
+    public HashedWheelTimer() {
+        this(100, TimeUnit.MILLISECONDS, 512);
+    }
+
+    /**
+     * @param tickDuration the precision of the timer.
+     * @param unit the unit of {@code tickDuration}.
+     * @param ticksPerWheel the number of buckets, rounded up to a power of two.
+     */
+    public HashedWheelTimer(long tickDuration, TimeUnit unit, int ticksPerWheel) {
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("tickDuration must be positive: " + tickDuration);
+        }
+        if (ticksPerWheel <= 0 || ticksPerWheel > 1 << 30) {
+            throw new IllegalArgumentException("ticksPerWheel out of range: " + ticksPerWheel);
+        }
+        int size = Integer.highestOneBit(ticksPerWheel - 1) << 1;
+        this.wheel = new Timeout[Math.max(1, size)];
+        this.mask = this.wheel.length - 1;
+        this.tickNanos = unit.toNanos(tickDuration);
+
+        this.worker = new EventThreadHelper.NamedThreadFactory("hashedWheelTimer", "worker").newThread(new Runnable() {
+            @Override
+            public void run() {
+                HashedWheelTimer.this.work();
+            }
+        });
+        this.worker.setDaemon(true);
+    }
+
+    /**
+     * Returns the timer shared by sockets that are not given one of their own.
+     */
+    public static HashedWheelTimer shared() {
+        return Shared.INSTANCE;
+    }
+
+    /**
+     * Schedules a task to run once after a delay.
+     *
+     * @param task the task, run on the timer thread.
+     * @param delay the delay.
+     * @param unit the unit of {@code delay}.
+     * @return a handle to cancel or rearm the timeout.
+     */
+    public Timeout newTimeout(Runnable task, long delay, TimeUnit unit) {
+        this.start();
+        Timeout timeout = new Timeout(this, task, System.nanoTime() + unit.toNanos(delay));
+        this.pending.offer(timeout);
+        return timeout;
+    }
+
+    /**
+     * Stops the worker thread. Pending timeouts never run.
+     */
+    public void stop() {
+        synchronized (this.lock) {
+            if (this.state == STARTED) {
+                this.worker.interrupt();
+            }
+            this.state = STOPPED;
+        }
+    }
+
+    private void start() {
+        if (this.state == STARTED) return;
+
+        synchronized (this.lock) {
+            if (this.state == STOPPED) {
+                throw new IllegalStateException("timer has been stopped");
+            }
+            if (this.state == INIT) {
+                this.startTime = System.nanoTime();
+                this.state = STARTED;
+                this.worker.start();
+            }
+        }
+    }
+
+    private void work() {
+        while (this.state == STARTED) {
+            long deadline = this.startTime + (this.tick + 1) * this.tickNanos;
+            long now;
+            while ((now = System.nanoTime()) < deadline) {
+                LockSupport.parkNanos(this, deadline - now);
+                if (this.state != STARTED) return;
+            }
+
+            this.transferPending();
+            this.expire((int)(this.tick & this.mask), now);
+            this.tick++;
+            // placed once the tick has moved on, so none lands back in the bucket just visited
+            for (Timeout timeout : this.pushedBack) {
+                this.place(timeout);
+            }
+            this.pushedBack.clear();
+        }
+    }
+
+    private void transferPending() {
+        Timeout timeout;
+        while ((timeout = this.pending.poll()) != null) {
+            if (timeout.bucket >= 0) {
+                // rearmed to an earlier deadline; take it out of its old bucket first
+                this.unlink(timeout);
+            }
+            if (timeout.state == Timeout.ST_INIT) {
+                this.place(timeout);
+            }
+        }
+    }
+
+    private void place(Timeout timeout) {
+        long deadline = timeout.deadline;
+        long ticks = (deadline - this.startTime + this.tickNanos - 1) / this.tickNanos - 1;
+        // a deadline already passed goes into the bucket about to be visited
+        ticks = Math.max(ticks, this.tick);
+        timeout.remainingRounds = (ticks - this.tick) / this.wheel.length;
+        timeout.placedDeadline = deadline;
+
+        int index = (int)(ticks & this.mask);
+        timeout.bucket = index;
+        timeout.prev = null;
+        timeout.next = this.wheel[index];
+        if (timeout.next != null) {
+            timeout.next.prev = timeout;
+        }
+        this.wheel[index] = timeout;
+    }
+
+    private void unlink(Timeout timeout) {
+        if (timeout.prev != null) {
+            timeout.prev.next = timeout.next;
+        } else {
+            this.wheel[timeout.bucket] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.next = timeout.prev = null;
+        timeout.bucket = -1;
+    }
+
+    private void expire(int index, long now) {
+        Timeout timeout = this.wheel[index];
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            if (timeout.state != Timeout.ST_INIT) {
+                this.unlink(timeout);
+            } else if (timeout.remainingRounds > 0) {
+                timeout.remainingRounds--;
+            } else if (timeout.deadline > now) {
+                // pushed back since it was placed
+                this.unlink(timeout);
+                this.pushedBack.add(timeout);
+            } else {
+                this.unlink(timeout);
+                if (Timeout.STATE.compareAndSet(timeout, Timeout.ST_INIT, Timeout.ST_EXPIRED)) {
+                    try {
+                        timeout.task.run();
+                    } catch (Throwable t) {
+                        logger.log(Level.WARNING, "timer task threw exception", t);
+                    }
+                }
+            }
+            timeout = next;
+        }
+    }
+
+
+    /**
+     * A task scheduled on a {@link HashedWheelTimer}.
+     */
+    public static final class Timeout {
+
+        private static final int ST_INIT = 0;
+        private static final int ST_CANCELLED = 1;
+        private static final int ST_EXPIRED = 2;
+
+        private static final AtomicIntegerFieldUpdater<Timeout> STATE =
+                AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+        private final HashedWheelTimer timer;
+        private final Runnable task;
+        private volatile long deadline;
+        private volatile int state = ST_INIT;
+
+        private volatile long placedDeadline;
+
+        // worker thread only
+        private long remainingRounds;
+        private int bucket = -1;
+        private Timeout next;
+        private Timeout prev;
+
+        private Timeout(HashedWheelTimer timer, Runnable task, long deadline) {
+            this.timer = timer;
+            this.task = task;
+            this.deadline = deadline;
+            this.placedDeadline = deadline;
+        }
+
+        /**
+         * Moves the deadline to {@code delay} from now.
+         *
+         * @param delay the new delay.
+         * @param unit the unit of {@code delay}.
+         * @return false if the timeout has already run or been cancelled, in which case
+         * a new one must be created.
+         */
+        public boolean rearm(long delay, TimeUnit unit) {
+            long deadline = System.nanoTime() + unit.toNanos(delay);
+            this.deadline = deadline;
+            if (this.state != ST_INIT) return false;
+
+            if (deadline < this.placedDeadline) {
+                // the worker only finds later deadlines by itself
+                this.timer.pending.offer(this);
+            }
+            return true;
+        }
+
+        /**
+         * Cancels the timeout; it is dropped from the wheel when its bucket next comes up.
+         *
+         * @return false if it has already run or been cancelled.
+         */
+        public boolean cancel() {
+            return STATE.compareAndSet(this, ST_INIT, ST_CANCELLED);
+        }
+
+        public boolean isCancelled() {
+            return this.state == ST_CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return this.state == ST_EXPIRED;
+        }
+    }
+
+
+    private static final class Shared {
+
+        static final HashedWheelTimer INSTANCE = new HashedWheelTimer();
+    }
+}
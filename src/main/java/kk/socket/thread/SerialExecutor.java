@@ -0,0 +1,218 @@
+package kk.socket.thread;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs tasks one at a time, in submission order, on threads borrowed from a shared pool,
+ * so a socket gets a serial event stream without a thread of its own.
+ *
+ * <p>Submitting a task is lock-free: it is linked into a multi-producer, single-consumer
+ * queue, and the executor is handed to the pool only when it was idle. Once running, it
+ * drains up to {@value #BATCH} tasks before giving the pool thread back. Exceptions
+ * thrown by tasks are logged and do not stop the executor.</p>
+ *
+ * <pre>
+ * Socket.Options opts = new Socket.Options();
+ * opts.service = new SerialExecutor();
+ * </pre>
+ */
+public class SerialExecutor extends AbstractExecutorService {
+
+    private static final Logger logger = Logger.getLogger(SerialExecutor.class.getName());
+
+    /*package*/ static final int BATCH = 256;
+
+    private static final int IDLE = 0;
+    private static final int SCHEDULED = 1;
+    private static final int RUNNING = 2;
+
+    private static final AtomicReferenceFieldUpdater<SerialExecutor, Node> TAIL =
+            AtomicReferenceFieldUpdater.newUpdater(SerialExecutor.class, Node.class, "tail");
+
+    private final Executor pool;
+    private final AtomicInteger state = new AtomicInteger(IDLE);
+    private final Runnable drain = new Runnable() {
+        @Override
+        public void run() {
+            SerialExecutor.this.drain();
+        }
+    };
+
+    // only advanced by the draining thread
+    private volatile Node head = new Node(null);
+    private volatile Node tail = this.head;
+
+    private volatile boolean shutdown;
+    private final CountDownLatch terminated = new CountDownLatch(1);
+
+    /**
+     * Creates an executor draining on a pool shared by all such executors, with one daemon
+     * thread per available processor.
+     */
+    public SerialExecutor() {
+        this(SharedPool.INSTANCE);
+    }
+
+    public SerialExecutor(Executor pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Whether the calling thread is currently running a task of this executor.
+     */
+    public boolean inExecutor() {
+        return EventThreadHelper.isCurrent(this);
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (task == null) throw new NullPointerException();
+        if (this.shutdown) {
+            throw new RejectedExecutionException("executor has been shut down");
+        }
+
+        Node node = new Node(task);
+        TAIL.getAndSet(this, node).next = node;
+        if (this.state.get() == IDLE && this.state.compareAndSet(IDLE, SCHEDULED)) {
+            this.schedule();
+        }
+    }
+
+    private void schedule() {
+        try {
+            this.pool.execute(this.drain);
+        } catch (RejectedExecutionException e) {
+            this.state.set(IDLE);
+            throw e;
+        }
+    }
+
+    private void drain() {
+        this.state.set(RUNNING);
+        ExecutorService previous = EventThreadHelper.enter(this);
+        try {
+            for (int i = 0; i < BATCH; i++) {
+                Runnable task = this.poll();
+                if (task == null) break;
+                try {
+                    task.run();
+                } catch (Throwable t) {
+                    logger.log(Level.SEVERE, "task threw exception", t);
+                }
+            }
+        } finally {
+            EventThreadHelper.exit(previous);
+        }
+
+        if (this.hasPending()) {
+            // yield the pool thread to other executors, then carry on
+            this.state.set(SCHEDULED);
+            this.schedule();
+            return;
+        }
+        this.state.set(IDLE);
+        // a producer may have linked a task after the last poll but seen RUNNING
+        if (this.hasPending() && this.state.compareAndSet(IDLE, SCHEDULED)) {
+            this.schedule();
+        } else if (this.shutdown && !this.hasPending()) {
+            this.terminated.countDown();
+        }
+    }
+
+    private Runnable poll() {
+        Node next = this.head.next;
+        if (next == null) {
+            if (this.head == this.tail) return null;
+            // a producer swapped the tail but has not linked its node yet
+            while ((next = this.head.next) == null) {
+                Thread.yield();
+            }
+        }
+        Runnable task = next.task;
+        next.task = null;
+        this.head = next;
+        return task;
+    }
+
+    private boolean hasPending() {
+        return this.head != this.tail;
+    }
+
+    @Override
+    public void shutdown() {
+        this.shutdown = true;
+        if (this.state.get() == IDLE && !this.hasPending()) {
+            this.terminated.countDown();
+        }
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        this.shutdown = true;
+        List<Runnable> tasks = new ArrayList<Runnable>();
+        if (this.state.compareAndSet(IDLE, RUNNING)) {
+            Runnable task;
+            while ((task = this.poll()) != null) {
+                tasks.add(task);
+            }
+            this.state.set(IDLE);
+            this.terminated.countDown();
+        }
+        return tasks;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return this.shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return this.terminated.getCount() == 0;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return this.terminated.await(timeout, unit);
+    }
+
+
+    private static final class Node {
+
+        Runnable task;
+        volatile Node next;
+
+        Node(Runnable task) {
+            this.task = task;
+        }
+    }
+
+
+    private static final class SharedPool {
+
+        static final ExecutorService INSTANCE = Executors.newFixedThreadPool(
+                Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+                    private final ThreadFactory factory = new EventThreadHelper.NamedThreadFactory("serialExecutor", "worker");
+
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = this.factory.newThread(runnable);
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+    }
+}
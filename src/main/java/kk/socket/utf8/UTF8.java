@@ -1,148 +1,208 @@
 package kk.socket.utf8;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.charset.StandardCharsets;
 
 /**
  * UTF-8 encoder/decoder ported from utf8.js.
  *
+ * <p>Encoded values are "byte strings": every char holds one UTF-8 byte (0x00-0xFF).
+ * The codec keeps no state between calls, so it is safe to use from several threads
+ * at once, and returns ASCII input unchanged without allocating.</p>
+ *
  * @see <a href="https://github.com/mathiasbynens/utf8.js">https://github.com/mathiasbynens/utf8.js</a>
  */
 public final class UTF8 {
 
     private static final String INVALID_CONTINUATION_BYTE = "Invalid continuation byte";
-    private static int[] byteArray;
-    private static int byteCount;
-    private static int byteIndex;
 
     private UTF8 () {}
 
     public static String encode(String string) throws UTF8Exception {
-        int[] codePoints = ucs2decode(string);
-        int length = codePoints.length;
-        int index = -1;
-        int codePoint;
-        StringBuilder byteString = new StringBuilder();
-        while (++index < length) {
-            codePoint = codePoints[index];
-            byteString.append(encodeCodePoint(codePoint));
-        }
-        return byteString.toString();
-    }
-
-    public static String decode(String byteString) throws UTF8Exception {
-        byteArray = ucs2decode(byteString);
-        byteCount = byteArray.length;
-        byteIndex = 0;
-        List<Integer> codePoints = new ArrayList<Integer>();
-        int tmp;
-        while ((tmp = decodeSymbol()) != -1) {
-            codePoints.add(tmp);
-        }
-        return ucs2encode(listToArray(codePoints));
-    }
-
-    private static int[] ucs2decode(String string) {
         int length = string.length();
-        int[] output = new int[string.codePointCount(0, length)];
-        int counter = 0;
-        int value;
-        for (int i = 0; i < length; i += Character.charCount(value)) {
-            value = string.codePointAt(i);
-            output[counter++] = value;
-        }
-        return output;
-    }
+        int i = asciiPrefixLength(string);
+        if (i == length) {
+            return string;
+        }
 
-    private static String encodeCodePoint(int codePoint) throws UTF8Exception {
-        StringBuilder symbol = new StringBuilder();
-        if ((codePoint & 0xFFFFFF80) == 0) {
-            return symbol.append(Character.toChars(codePoint)).toString();
+        char[] output = new char[encodedLength(string, i)];
+        string.getChars(0, i, output, 0);
+        int index = i;
+        while (i < length) {
+            int codePoint = string.codePointAt(i);
+            i += Character.charCount(codePoint);
+            index = encodeCodePoint(codePoint, output, index);
         }
-        if ((codePoint & 0xFFFFF800) == 0) {
-            symbol.append(Character.toChars(((codePoint >> 6) & 0x1F) | 0xC0));
-        } else if ((codePoint & 0xFFFF0000) == 0) {
-            checkScalarValue(codePoint);
-            symbol.append(Character.toChars(((codePoint >> 12) & 0x0F) | 0xE0));
-            symbol.append(createByte(codePoint, 6));
-        } else if ((codePoint & 0xFFE00000) == 0) {
-            symbol.append(Character.toChars(((codePoint >> 18) & 0x07) | 0xF0));
-            symbol.append(createByte(codePoint, 12));
-            symbol.append(createByte(codePoint, 6));
-        }
-        symbol.append(Character.toChars((codePoint & 0x3F) | 0x80));
-        return symbol.toString();
+        return new String(output);
     }
 
-    private static char[] createByte(int codePoint, int shift) {
-        return Character.toChars(((codePoint >> shift) & 0x3F) | 0x80);
+    public static String decode(String byteString) throws UTF8Exception {
+        return decode(byteString, 0, byteString.length());
     }
 
-    private static int decodeSymbol() throws UTF8Exception {
-        int byte1;
-        int byte2;
-        int byte3;
-        int byte4;
-        int codePoint;
-
-        if (byteIndex > byteCount) {
-            throw new UTF8Exception("Invalid byte index");
-        }
-
-        if (byteIndex == byteCount) {
-            return -1;
-        }
-
-        byte1 = byteArray[byteIndex] & 0xFF;
-        byteIndex++;
+    /**
+     * Decodes the byte string held in {@code byteString} between {@code offset} and
+     * {@code offset + length}, without first copying it out with {@code substring}.
+     *
+     * @param byteString a string whose chars are UTF-8 bytes.
+     * @param offset the index of the first char to decode.
+     * @param length the number of chars to decode.
+     * @return the decoded string.
+     * @throws UTF8Exception if the chars are not valid UTF-8 bytes.
+     */
+    public static String decode(String byteString, int offset, int length) throws UTF8Exception {
+        int end = offset + length;
+        int i = offset;
+        while (i < end && byteString.charAt(i) < 0x80) {
+            i++;
+        }
+        if (i == end) {
+            return byteString.substring(offset, end);
+        }
+
+        // a decoded string never has more chars than there are bytes
+        char[] output = new char[length];
+        byteString.getChars(offset, i, output, 0);
+        return decode(byteString, null, i, end, output, i - offset);
+    }
 
-        if ((byte1 & 0x80) == 0) {
-            return byte1;
-        }
+    /**
+     * Decodes UTF-8 bytes straight into a String, rejecting the same malformed input
+     * as {@link #decode(String)}.
+     *
+     * @param bytes UTF-8 encoded bytes.
+     * @param offset the index of the first byte to decode.
+     * @param length the number of bytes to decode.
+     * @return the decoded string.
+     * @throws UTF8Exception if the bytes are not valid UTF-8.
+     */
+    public static String decode(byte[] bytes, int offset, int length) throws UTF8Exception {
+        int end = offset + length;
+        int i = offset;
+        while (i < end && bytes[i] >= 0) {
+            i++;
+        }
+        if (i == end) {
+            return new String(bytes, offset, length, StandardCharsets.US_ASCII);
+        }
+
+        char[] output = new char[length];
+        for (int j = offset; j < i; j++) {
+            output[j - offset] = (char)bytes[j];
+        }
+        return decode(null, bytes, i, end, output, i - offset);
+    }
 
-        if ((byte1 & 0xE0) == 0xC0) {
-            byte2 = readContinuationByte();
-            codePoint = ((byte1 & 0x1F) << 6) | byte2;
-            if (codePoint >= 0x80) {
-                return codePoint;
+    /**
+     * Decodes bytes from either {@code byteString} or {@code bytes}, whichever is not null.
+     */
+    private static String decode(String byteString, byte[] bytes, int i, int end, char[] output, int index)
+            throws UTF8Exception {
+        while (i < end) {
+            int byte1 = readByte(byteString, bytes, i++);
+            int codePoint;
+
+            if ((byte1 & 0x80) == 0) {
+                codePoint = byte1;
+            } else if ((byte1 & 0xE0) == 0xC0) {
+                int byte2 = readContinuationByte(byteString, bytes, i++, end);
+                codePoint = ((byte1 & 0x1F) << 6) | byte2;
+                if (codePoint < 0x80) {
+                    throw new UTF8Exception(INVALID_CONTINUATION_BYTE);
+                }
+            } else if ((byte1 & 0xF0) == 0xE0) {
+                int byte2 = readContinuationByte(byteString, bytes, i++, end);
+                int byte3 = readContinuationByte(byteString, bytes, i++, end);
+                codePoint = ((byte1 & 0x0F) << 12) | (byte2 << 6) | byte3;
+                if (codePoint < 0x0800) {
+                    throw new UTF8Exception(INVALID_CONTINUATION_BYTE);
+                }
+                checkScalarValue(codePoint);
+            } else if ((byte1 & 0xF8) == 0xF0) {
+                int byte2 = readContinuationByte(byteString, bytes, i++, end);
+                int byte3 = readContinuationByte(byteString, bytes, i++, end);
+                int byte4 = readContinuationByte(byteString, bytes, i++, end);
+                codePoint = ((byte1 & 0x07) << 0x12) | (byte2 << 0x0C) | (byte3 << 0x06) | byte4;
+                if (codePoint < 0x010000 || codePoint > 0x10FFFF) {
+                    throw new UTF8Exception(INVALID_CONTINUATION_BYTE);
+                }
             } else {
                 throw new UTF8Exception(INVALID_CONTINUATION_BYTE);
             }
+
+            index += Character.toChars(codePoint, output, index);
         }
+        return new String(output, 0, index);
+    }
 
-        if ((byte1 & 0xF0) == 0xE0) {
-            byte2 = readContinuationByte();
-            byte3 = readContinuationByte();
-            codePoint = ((byte1 & 0x0F) << 12) | (byte2 << 6) | byte3;
-            if (codePoint >= 0x0800) {
+    private static int asciiPrefixLength(String string) {
+        int length = string.length();
+        int i = 0;
+        while (i < length && string.charAt(i) < 0x80) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int encodedLength(String string, int start) throws UTF8Exception {
+        int length = start;
+        for (int i = start, l = string.length(); i < l; ) {
+            int codePoint = string.codePointAt(i);
+            i += Character.charCount(codePoint);
+            if ((codePoint & 0xFFFFFF80) == 0) {
+                length += 1;
+            } else if ((codePoint & 0xFFFFF800) == 0) {
+                length += 2;
+            } else if ((codePoint & 0xFFFF0000) == 0) {
                 checkScalarValue(codePoint);
-                return codePoint;
+                length += 3;
             } else {
-                throw new UTF8Exception(INVALID_CONTINUATION_BYTE);
+                length += 4;
             }
         }
+        return length;
+    }
 
-        if ((byte1 & 0xF8) == 0xF0) {
-            byte2 = readContinuationByte();
-            byte3 = readContinuationByte();
-            byte4 = readContinuationByte();
-            codePoint = ((byte1 & 0x0F) << 0x12) | (byte2 << 0x0C) | (byte3 << 0x06) | byte4;
-            if (codePoint >= 0x010000 && codePoint <= 0x10FFFF) {
-                return codePoint;
-            }
+    private static int encodeCodePoint(int codePoint, char[] output, int index) {
+        if ((codePoint & 0xFFFFFF80) == 0) {
+            output[index++] = (char)codePoint;
+            return index;
         }
+        if ((codePoint & 0xFFFFF800) == 0) {
+            output[index++] = (char)(((codePoint >> 6) & 0x1F) | 0xC0);
+        } else if ((codePoint & 0xFFFF0000) == 0) {
+            output[index++] = (char)(((codePoint >> 12) & 0x0F) | 0xE0);
+            output[index++] = createByte(codePoint, 6);
+        } else {
+            output[index++] = (char)(((codePoint >> 18) & 0x07) | 0xF0);
+            output[index++] = createByte(codePoint, 12);
+            output[index++] = createByte(codePoint, 6);
+        }
+        output[index++] = (char)((codePoint & 0x3F) | 0x80);
+        return index;
+    }
 
-        throw new UTF8Exception(INVALID_CONTINUATION_BYTE);
+    private static char createByte(int codePoint, int shift) {
+        return (char)(((codePoint >> shift) & 0x3F) | 0x80);
     }
 
-    private static int readContinuationByte() throws UTF8Exception {
-        if (byteIndex >= byteCount) {
-            throw new UTF8Exception("Invalid byte index");
+    private static int readByte(String byteString, byte[] bytes, int index) throws UTF8Exception {
+        if (bytes != null) {
+            return bytes[index] & 0xFF;
+        }
+        char c = byteString.charAt(index);
+        if (c > 0xFF) {
+            throw new UTF8Exception("Invalid byte U+" + Integer.toHexString(c).toUpperCase());
         }
+        return c;
+    }
 
-        int continuationByte = byteArray[byteIndex] & 0xFF;
-        byteIndex++;
+    private static int readContinuationByte(String byteString, byte[] bytes, int index, int end)
+            throws UTF8Exception {
+        if (index >= end) {
+            throw new UTF8Exception("Invalid byte index");
+        }
 
+        int continuationByte = readByte(byteString, bytes, index);
         if ((continuationByte & 0xC0) == 0x80) {
             return continuationByte & 0x3F;
         }
@@ -150,14 +210,6 @@ public final class UTF8 {
         throw new UTF8Exception(INVALID_CONTINUATION_BYTE);
     }
 
-    private static String ucs2encode(int[] array) {
-        StringBuilder output = new StringBuilder();
-        for (int value : array) {
-            output.appendCodePoint(value);
-        }
-        return output.toString();
-    }
-
     private static void checkScalarValue(int codePoint) throws UTF8Exception {
         if (codePoint >= 0xD800 && codePoint <= 0xDFFF) {
             throw new UTF8Exception(
@@ -166,13 +218,4 @@ public final class UTF8 {
             );
         }
     }
-
-    private static int[] listToArray(List<Integer> list) {
-        int size = list.size();
-        int[] array = new int[size];
-        for (int i = 0; i < size; i++) {
-            array[i] = list.get(i);
-        }
-        return array;
-    }
 }
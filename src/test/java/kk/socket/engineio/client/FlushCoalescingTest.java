@@ -0,0 +1,220 @@
+package kk.socket.engineio.client;
+
+import kk.socket.emitter.Emitter;
+import kk.socket.engineio.client.transports.Polling;
+import kk.socket.engineio.client.transports.WebSocket;
+import kk.socket.engineio.server.EngineIOServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+@RunWith(JUnit4.class)
+public class FlushCoalescingTest {
+
+    private static final int MESSAGES = 10;
+
+    private EngineIOServer server;
+
+    @Before
+    public void startServer() throws IOException {
+        this.server = new EngineIOServer();
+        this.server.start();
+    }
+
+    @After
+    public void stopServer() throws IOException {
+        this.server.close();
+    }
+
+    @Test(timeout = 10000)
+    public void flushEveryMessageByDefault() throws InterruptedException {
+        assertThat(this.countFlushes(this.options()), is(MESSAGES));
+    }
+
+    @Test(timeout = 10000)
+    public void flushMessagesSentWithinTheDelayTogether() throws InterruptedException {
+        Socket.Options opts = this.options();
+        opts.flushDelayMicros = 50000;
+        assertThat(this.countFlushes(opts), is(1));
+    }
+
+    @Test(timeout = 10000)
+    public void flushEarlyOnceTheBatchIsFull() throws InterruptedException {
+        Socket.Options opts = this.options();
+        opts.flushDelayMicros = 50000;
+        opts.maxBatchBytes = 3;
+        // three batches of three one-character messages, then the last one after the delay
+        assertThat(this.countFlushes(opts), is(4));
+    }
+
+    @Test(timeout = 10000)
+    public void flushCorkedMessagesOnUncork() throws InterruptedException {
+        int flushes = this.countFlushes(this.options(), new Sender() {
+            @Override
+            public void send(Socket socket) {
+                socket.cork();
+                socket.cork();
+                sendAll(socket);
+                socket.uncork();
+                assertThat(socket.writeBuffer.size(), is(MESSAGES));
+                socket.uncork();
+            }
+        });
+        assertThat(flushes, is(1));
+    }
+
+    @Test(timeout = 10000)
+    public void batchFromAnotherThread() throws InterruptedException {
+        int flushes = this.countFlushes(this.options(), new Sender() {
+            @Override
+            public void send(final Socket socket) {
+                new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        socket.batch(new Runnable() {
+                            @Override
+                            public void run() {
+                                sendAll(socket);
+                            }
+                        });
+                    }
+                }).start();
+            }
+        });
+        assertThat(flushes, is(1));
+    }
+
+    @Test(timeout = 10000)
+    public void flushCorkedMessagesInOneGoOnceTheRingWraps() throws InterruptedException {
+        Socket.Options opts = this.options();
+        // so that packets are still queued when the ones before them drain
+        opts.transports = new String[] {Polling.NAME};
+        final Socket socket = new Socket(opts);
+        final AtomicBoolean wrapped = new AtomicBoolean();
+        final AtomicInteger flushes = new AtomicInteger();
+        final List<Object> echoes = new ArrayList<Object>();
+        final int capacity = socket.writeBuffer.array().length;
+        final CountDownLatch echoed = new CountDownLatch(capacity + 1);
+        socket.on(Socket.EVENT_OPEN, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                // called once "0" is polled from the buffer, leaving the corked messages behind it
+                socket.send("0", new Runnable() {
+                    @Override
+                    public void run() {
+                        socket.send(String.valueOf(capacity - 1));
+                        socket.send(String.valueOf(capacity));
+                        wrapped.set(socket.writeBuffer.contiguous(0) < socket.writeBuffer.size());
+                        flushes.set(0);
+                        socket.uncork();
+                    }
+                });
+                socket.cork();
+                for (int i = 1; i < capacity - 1; i++) {
+                    socket.send(String.valueOf(i));
+                }
+            }
+        }).on(Socket.EVENT_FLUSH, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                flushes.incrementAndGet();
+            }
+        }).on(Socket.EVENT_MESSAGE, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                if (!"hi".equals(args[0])) {
+                    echoes.add(args[0]);
+                    echoed.countDown();
+                }
+            }
+        });
+        socket.open();
+
+        echoed.await();
+        socket.close();
+        assertThat(wrapped.get(), is(true));
+        assertThat(flushes.get(), is(1));
+        assertThat(echoes.size(), is(capacity + 1));
+        assertThat(echoes.get(capacity), is((Object)String.valueOf(capacity)));
+    }
+
+    private Socket.Options options() {
+        Socket.Options opts = new Socket.Options();
+        opts.hostname = this.server.getHostName();
+        opts.port = this.server.getPort();
+        opts.transports = new String[] {WebSocket.NAME};
+        return opts;
+    }
+
+    /**
+     * Sends messages back to back on open, and counts the flushes until all are echoed.
+     */
+    private int countFlushes(Socket.Options opts) throws InterruptedException {
+        return this.countFlushes(opts, new Sender() {
+            @Override
+            public void send(Socket socket) {
+                sendAll(socket);
+            }
+        });
+    }
+
+    private int countFlushes(Socket.Options opts, final Sender sender) throws InterruptedException {
+        final Socket socket = new Socket(opts);
+        final AtomicInteger flushes = new AtomicInteger();
+        final List<Object> echoes = new ArrayList<Object>();
+        final CountDownLatch echoed = new CountDownLatch(MESSAGES);
+        socket.on(Socket.EVENT_OPEN, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                sender.send(socket);
+            }
+        }).on(Socket.EVENT_FLUSH, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                flushes.incrementAndGet();
+            }
+        }).on(Socket.EVENT_MESSAGE, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                if (!"hi".equals(args[0])) {
+                    echoes.add(args[0]);
+                    echoed.countDown();
+                }
+            }
+        });
+        socket.open();
+
+        echoed.await();
+        socket.close();
+        List<Object> expected = new ArrayList<Object>();
+        for (int i = 0; i < MESSAGES; i++) {
+            expected.add(String.valueOf(i));
+        }
+        assertThat(echoes, is(expected));
+        return flushes.get();
+    }
+
+    private static void sendAll(Socket socket) {
+        for (int i = 0; i < MESSAGES; i++) {
+            socket.send(String.valueOf(i));
+        }
+    }
+
+
+    private interface Sender {
+
+        void send(Socket socket);
+    }
+}
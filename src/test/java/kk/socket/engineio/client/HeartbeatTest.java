@@ -0,0 +1,99 @@
+package kk.socket.engineio.client;
+
+import kk.socket.emitter.Emitter;
+import kk.socket.engineio.client.transports.WebSocket;
+import kk.socket.engineio.server.EngineIOServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+@RunWith(JUnit4.class)
+public class HeartbeatTest {
+
+    private EngineIOServer server;
+
+    @Before
+    public void startServer() throws IOException {
+        this.server = new EngineIOServer(100, 200);
+        this.server.start();
+    }
+
+    @After
+    public void stopServer() throws IOException {
+        this.server.close();
+    }
+
+    @Test(timeout = 10000)
+    public void stayOpenWhilePongsArrive() throws InterruptedException {
+        this.stayOpenWhilePongsArrive(false);
+    }
+
+    @Test(timeout = 10000)
+    public void stayOpenWhilePongsArriveWithLazyHeartbeat() throws InterruptedException {
+        this.stayOpenWhilePongsArrive(true);
+    }
+
+    @Test(timeout = 10000)
+    public void timeOutWithoutPongs() throws InterruptedException {
+        this.timeOutWithoutPongs(false);
+    }
+
+    @Test(timeout = 10000)
+    public void timeOutWithoutPongsWithLazyHeartbeat() throws InterruptedException {
+        this.timeOutWithoutPongs(true);
+    }
+
+    private void stayOpenWhilePongsArrive(boolean lazyHeartbeat) throws InterruptedException {
+        final BlockingQueue<Object> closes = new LinkedBlockingQueue<Object>();
+        final AtomicInteger pongs = new AtomicInteger();
+        Socket socket = this.socket(lazyHeartbeat, closes);
+        socket.on(Socket.EVENT_PONG, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                pongs.incrementAndGet();
+            }
+        });
+        socket.open();
+
+        assertThat(closes.poll(1, TimeUnit.SECONDS), is(nullValue()));
+        assertThat(pongs.get(), greaterThanOrEqualTo(3));
+        socket.close();
+    }
+
+    private void timeOutWithoutPongs(boolean lazyHeartbeat) throws InterruptedException {
+        this.server.ignorePings();
+        BlockingQueue<Object> closes = new LinkedBlockingQueue<Object>();
+        this.socket(lazyHeartbeat, closes).open();
+
+        assertThat(closes.take(), is((Object)"ping timeout"));
+    }
+
+    private Socket socket(boolean lazyHeartbeat, final BlockingQueue<Object> closes) {
+        Socket.Options opts = new Socket.Options();
+        opts.hostname = this.server.getHostName();
+        opts.port = this.server.getPort();
+        opts.transports = new String[] {WebSocket.NAME};
+        opts.lazyHeartbeat = lazyHeartbeat;
+        Socket socket = new Socket(opts);
+        socket.on(Socket.EVENT_CLOSE, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                closes.offer(args[0]);
+            }
+        });
+        return socket;
+    }
+}
@@ -0,0 +1,80 @@
+package kk.socket.engineio.client;
+
+import kk.socket.emitter.Emitter;
+import kk.socket.engineio.client.transports.WebSocket;
+import kk.socket.engineio.server.EngineIOServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+@RunWith(JUnit4.class)
+public class MessageBatchTest {
+
+    private EngineIOServer server;
+
+    @Before
+    public void startServer() throws IOException {
+        this.server = new EngineIOServer();
+        this.server.start();
+    }
+
+    @After
+    public void stopServer() throws IOException {
+        this.server.close();
+    }
+
+    @Test(timeout = 10000)
+    public void emitMessagesReceivedTogetherAsBatches() throws InterruptedException {
+        Socket.Options opts = new Socket.Options();
+        opts.hostname = this.server.getHostName();
+        opts.port = this.server.getPort();
+        opts.transports = new String[] {WebSocket.NAME};
+        final Socket socket = new Socket(opts);
+
+        final List<Object> messages = new ArrayList<Object>();
+        final BlockingQueue<List<Object>> batches = new LinkedBlockingQueue<List<Object>>();
+        socket.on(Socket.EVENT_OPEN, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                for (int i = 0; i < 10; i++) {
+                    socket.send(String.valueOf(i));
+                }
+            }
+        }).on(Socket.EVENT_MESSAGE, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                messages.add(args[0]);
+            }
+        }).on(Socket.EVENT_MESSAGE_BATCH, new Emitter.Listener() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public void call(Object... args) {
+                batches.offer((List<Object>)args[0]);
+            }
+        });
+        socket.open();
+
+        // "hi" and the ten echoes, after their message events and in the same order
+        List<Object> batched = new ArrayList<Object>();
+        while (batched.size() < 11) {
+            List<Object> batch = batches.take();
+            assertThat(batch.isEmpty(), is(false));
+            batched.addAll(batch);
+        }
+        socket.close();
+        assertThat(batched.get(0), is((Object)"hi"));
+        assertThat(batched.get(10), is((Object)"9"));
+        assertThat(batched, is(messages));
+    }
+}
@@ -0,0 +1,133 @@
+package kk.socket.engineio.client;
+
+import kk.socket.emitter.Emitter;
+import kk.socket.engineio.client.transports.Polling;
+import kk.socket.engineio.client.transports.WebSocket;
+import kk.socket.engineio.server.EngineIOServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+@RunWith(JUnit4.class)
+public class SendCompletionTest {
+
+    private static final int MESSAGES = 100;
+
+    private EngineIOServer server;
+
+    @Before
+    public void startServer() throws IOException {
+        this.server = new EngineIOServer();
+        this.server.start();
+    }
+
+    @After
+    public void stopServer() throws IOException {
+        this.server.close();
+    }
+
+    @Test(timeout = 10000)
+    public void completeOnWebSocketDrain() throws Exception {
+        this.completeOnDrain(WebSocket.NAME);
+    }
+
+    @Test(timeout = 10000)
+    public void completeOnPollingDrain() throws Exception {
+        this.completeOnDrain(Polling.NAME);
+    }
+
+    @Test(timeout = 10000)
+    public void logCallbackExceptions() throws Exception {
+        final BlockingQueue<LogRecord> records = new LinkedBlockingQueue<LogRecord>();
+        Handler handler = new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                if (record.getLevel() == Level.SEVERE) {
+                    records.offer(record);
+                }
+            }
+
+            @Override
+            public void flush() {}
+
+            @Override
+            public void close() {}
+        };
+        Logger logger = Logger.getLogger(Socket.class.getName());
+        logger.addHandler(handler);
+        try {
+            Socket socket = this.open(WebSocket.NAME);
+            final RuntimeException error = new RuntimeException("callback failed");
+            CompletableFuture<Void> sent = socket.send("hi", new Runnable() {
+                @Override
+                public void run() {
+                    throw error;
+                }
+            }).toCompletableFuture();
+
+            sent.get(5, TimeUnit.SECONDS);
+            assertThat(records.take().getThrown(), is((Throwable)error));
+            socket.close();
+        } finally {
+            logger.removeHandler(handler);
+        }
+    }
+
+    private Socket open(String transport) throws InterruptedException {
+        Socket.Options opts = new Socket.Options();
+        opts.hostname = this.server.getHostName();
+        opts.port = this.server.getPort();
+        opts.transports = new String[] {transport};
+        opts.upgrade = false;
+        Socket socket = new Socket(opts);
+        final CountDownLatch opened = new CountDownLatch(1);
+        socket.on(Socket.EVENT_OPEN, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                opened.countDown();
+            }
+        });
+        socket.open();
+        opened.await();
+        return socket;
+    }
+
+    private void completeOnDrain(String transport) throws Exception {
+        Socket socket = this.open(transport);
+        final CountDownLatch callbacks = new CountDownLatch(MESSAGES);
+
+        List<CompletableFuture<Void>> sent = new ArrayList<CompletableFuture<Void>>();
+        for (int i = 0; i < MESSAGES; i++) {
+            sent.add(socket.send(String.valueOf(i), new Runnable() {
+                @Override
+                public void run() {
+                    callbacks.countDown();
+                }
+            }).toCompletableFuture());
+        }
+        CompletableFuture.allOf(sent.toArray(new CompletableFuture[sent.size()])).get(5, TimeUnit.SECONDS);
+        assertThat(callbacks.await(5, TimeUnit.SECONDS), is(true));
+        assertThat(socket.bufferedAmount(), is(0L));
+        // nothing is left waiting on flush
+        assertThat(socket.listeners(Socket.EVENT_FLUSH).isEmpty(), is(true));
+        socket.close();
+    }
+}
@@ -1,15 +1,26 @@
 package kk.socket.engineio.client;
 
+import kk.socket.emitter.Emitter;
 import kk.socket.engineio.client.transports.PollingXHR;
 import kk.socket.engineio.client.transports.WebSocket;
+import kk.socket.engineio.parser.Packet;
+import kk.socket.engineio.parser.PacketPool;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.junit.Assert.assertThat;
 
 @RunWith(JUnit4.class)
@@ -171,6 +182,146 @@ public class TransportTest {
         assertThat(ws.uri(), containsString("ws://[::1]:8080/engine.io"));
     }
 
+    @Test
+    public void releasePooledPacketsAfterListeners() {
+        Transport.Options opt = new Transport.Options();
+        opt.packetPool = new PacketPool(4, 4, true);
+        WS ws = new WS(opt);
+        final List<Packet> packets = new ArrayList<Packet>();
+        ws.on(Transport.EVENT_PACKET, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                Packet packet = (Packet)args[0];
+                if (packets.isEmpty()) {
+                    packet.retain();
+                }
+                packets.add(packet);
+            }
+        });
+
+        ws.onData("4hello");
+        ws.onData("4world");
+        assertThat(packets.get(0).data, is((Object)"hello"));
+        assertThat(packets.get(1).data, is(nullValue()));
+        assertThat(opt.packetPool.outstanding(), is(1));
+        packets.get(0).release();
+        assertThat(opt.packetPool.outstanding(), is(0));
+    }
+
+    @Test
+    public void binaryFramesAsByteBufferViews() {
+        Transport.Options opt = new Transport.Options();
+        opt.binaryAsByteBuffer = true;
+        WS ws = new WS(opt);
+        final List<Object> messages = new ArrayList<Object>();
+        ws.on(Transport.EVENT_PACKET, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                messages.add(((Packet)args[0]).data);
+            }
+        });
+
+        byte[] frame = new byte[] {4, 1, 2, 3};
+        ws.onData(ByteBuffer.wrap(frame).asReadOnlyBuffer());
+        ByteBuffer data = (ByteBuffer)messages.get(0);
+        assertThat(data.isReadOnly(), is(true));
+        assertThat(data.remaining(), is(3));
+        frame[1] = 9;
+        assertThat(data.get(0), is((byte)9));
+    }
+
+    @Test
+    public void pollingTextAsCharSequenceViews() {
+        Transport.Options opt = new Transport.Options();
+        opt.textAsCharSequence = true;
+        Transport polling = new Polling(opt);
+        final List<Object> messages = new ArrayList<Object>();
+        polling.on(Transport.EVENT_PACKET, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                messages.add(((Packet)args[0]).data);
+            }
+        });
+
+        polling.onData("6:4hello");
+        assertThat(messages.size(), is(1));
+        assertThat(messages.get(0) instanceof String, is(false));
+        assertThat(messages.get(0).toString(), is("hello"));
+    }
+
+    @Test(timeout = 10000)
+    public void receiveFramesInBatches() throws InterruptedException {
+        ExecutorService service = Executors.newSingleThreadExecutor();
+        Transport.Options opt = new Transport.Options();
+        opt.service = service;
+        opt.inboundBatchSize = 64;
+        WS ws = new WS(opt);
+        final List<Object> events = new ArrayList<Object>();
+        ws.on(Transport.EVENT_PACKET, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                events.add(((Packet)args[0]).data);
+            }
+        }).on(Transport.EVENT_BATCH_END, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                events.add("end");
+            }
+        });
+
+        // hold the event thread so that the frames pile up in the inbox
+        final CountDownLatch release = new CountDownLatch(1);
+        service.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        for (int i = 0; i < 100; i++) {
+            ws.receive("4" + i);
+        }
+        final CountDownLatch done = new CountDownLatch(1);
+        ws.receive(new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        });
+        release.countDown();
+        done.await();
+        service.shutdown();
+        service.awaitTermination(5, TimeUnit.SECONDS);
+
+        assertThat(events.size(), is(102));
+        assertThat(events.get(64), is((Object)"end"));
+        assertThat(events.get(65), is((Object)"64"));
+        assertThat(events.get(100), is((Object)"99"));
+        assertThat(events.get(101), is((Object)"end"));
+    }
+
+    @Test
+    public void byteArrayListener() {
+        final List<Object> args = new ArrayList<Object>();
+        Emitter.Listener listener = new ByteArrayListener(new Emitter.Listener() {
+            @Override
+            public void call(Object... objects) {
+                args.add(objects[0]);
+                args.add(objects[1]);
+            }
+        });
+
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[] {0, 1, 2, 3});
+        buffer.position(1);
+        listener.call(buffer.asReadOnlyBuffer(), "a");
+        assertThat((byte[])args.get(0), is(new byte[] {1, 2, 3}));
+        assertThat(args.get(1), is((Object)"a"));
+        assertThat(buffer.position(), is(1));
+    }
+
     class Polling extends PollingXHR {
 
         public Polling(Transport.Options opts) {
@@ -0,0 +1,229 @@
+package kk.socket.engineio.client;
+
+import kk.socket.emitter.Emitter;
+import kk.socket.engineio.client.transports.Polling;
+import kk.socket.engineio.parser.Packet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Fills the write buffer of a socket whose handshake never completes, then ends the
+ * connection to close the socket.
+ */
+@RunWith(JUnit4.class)
+public class WriteBufferTest {
+
+    private ServerSocket server;
+    private final List<java.net.Socket> accepted = new CopyOnWriteArrayList<java.net.Socket>();
+    private final CountDownLatch connected = new CountDownLatch(1);
+
+    @Before
+    public void startServer() throws IOException {
+        this.server = new ServerSocket(0);
+        Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (;;) {
+                        WriteBufferTest.this.accepted.add(WriteBufferTest.this.server.accept());
+                        WriteBufferTest.this.connected.countDown();
+                    }
+                } catch (IOException e) {
+                    // closed
+                }
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    @After
+    public void stopServer() throws IOException {
+        this.server.close();
+        for (java.net.Socket socket : this.accepted) {
+            socket.close();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void failWhenFull() throws Exception {
+        Socket.Options opts = this.options();
+        opts.writeBufferMessages = 2;
+        opts.writeBufferBytes = 5;
+        Socket socket = new Socket(opts);
+        BlockingQueue<List<Object>> closes = this.open(socket);
+
+        CompletionStage<Void> first = socket.send("ab");
+        assertThat(accepted(first), is(true));
+        assertThat(accepted(socket.send("cd")), is(true));
+        assertThat(accepted(socket.send("e")), is(false));
+        assertThat(socket.bufferedAmount(), is(4L));
+
+        this.stopServer();
+        assertThat(closes.take(), is((List<Object>)list("ab", "cd")));
+        try {
+            first.toCompletableFuture().get();
+            fail();
+        } catch (ExecutionException e) {
+            assertThat(e.getCause() instanceof EngineIOException, is(true));
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void failOnBytes() throws Exception {
+        Socket.Options opts = this.options();
+        opts.writeBufferBytes = 5;
+        Socket socket = new Socket(opts);
+        this.open(socket);
+
+        assertThat(accepted(socket.send("abc")), is(true));
+        assertThat(accepted(socket.send("def")), is(false));
+        assertThat(accepted(socket.send(new byte[2])), is(true));
+        assertThat(socket.bufferedAmount(), is(5L));
+    }
+
+    @Test(timeout = 10000)
+    public void dropNewest() throws Exception {
+        Socket.Options opts = this.options();
+        opts.writeBufferMessages = 2;
+        opts.overflowPolicy = Socket.OverflowPolicy.DROP_NEWEST;
+        Socket socket = new Socket(opts);
+        BlockingQueue<List<Object>> closes = this.open(socket);
+
+        for (String message : new String[] {"a", "b", "c", "d"}) {
+            socket.send(message);
+        }
+
+        this.stopServer();
+        assertThat(closes.take(), is((List<Object>)list("a", "b")));
+    }
+
+    @Test(timeout = 10000)
+    public void dropOldest() throws Exception {
+        Socket.Options opts = this.options();
+        opts.writeBufferMessages = 2;
+        opts.overflowPolicy = Socket.OverflowPolicy.DROP_OLDEST;
+        Socket socket = new Socket(opts);
+        BlockingQueue<List<Object>> closes = this.open(socket);
+
+        List<CompletionStage<Void>> sent = new ArrayList<CompletionStage<Void>>();
+        for (String message : new String[] {"a", "b", "c", "d"}) {
+            sent.add(socket.send(message));
+            assertThat(accepted(sent.get(sent.size() - 1)), is(true));
+        }
+        try {
+            sent.get(0).toCompletableFuture().get();
+            fail();
+        } catch (ExecutionException e) {
+            assertThat(e.getCause().getMessage(), is("dropped from a full write buffer"));
+        }
+
+        this.stopServer();
+        assertThat(closes.take(), is((List<Object>)list("c", "d")));
+    }
+
+    @Test(timeout = 10000)
+    public void blockUntilClosed() throws Exception {
+        Socket.Options opts = this.options();
+        opts.writeBufferMessages = 1;
+        opts.overflowPolicy = Socket.OverflowPolicy.BLOCK;
+        final Socket socket = new Socket(opts);
+        this.open(socket);
+
+        socket.send("a");
+        final BlockingQueue<CompletionStage<Void>> sent = new LinkedBlockingQueue<CompletionStage<Void>>();
+        Thread sender = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                sent.offer(socket.send("b"));
+            }
+        });
+        sender.start();
+        assertThat(sent.poll(200, TimeUnit.MILLISECONDS) == null, is(true));
+
+        this.stopServer();
+        sent.take();
+    }
+
+    @Test(timeout = 10000)
+    public void writabilityChanged() throws Exception {
+        Socket.Options opts = this.options();
+        opts.writeBufferHighWaterMark = 4;
+        opts.writeBufferLowWaterMark = 2;
+        Socket socket = new Socket(opts);
+        final BlockingQueue<Object> changes = new LinkedBlockingQueue<Object>();
+        socket.on(Socket.EVENT_WRITABILITY_CHANGED, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                changes.offer(args[0]);
+            }
+        });
+        this.open(socket);
+
+        assertThat(socket.isWritable(), is(true));
+        socket.send("abc");
+        socket.send("de");
+        assertThat(changes.take(), is((Object)false));
+        assertThat(socket.isWritable(), is(false));
+    }
+
+    private Socket.Options options() {
+        Socket.Options opts = new Socket.Options();
+        opts.hostname = "localhost";
+        opts.port = this.server.getLocalPort();
+        opts.transports = new String[] {Polling.NAME};
+        return opts;
+    }
+
+    /**
+     * Opens the socket, and returns the data of the packets still buffered when it closes.
+     */
+    private BlockingQueue<List<Object>> open(final Socket socket) throws InterruptedException {
+        final BlockingQueue<List<Object>> closes = new LinkedBlockingQueue<List<Object>>();
+        socket.on(Socket.EVENT_CLOSE, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                List<Object> buffered = new ArrayList<Object>();
+                for (Packet packet : socket.writeBuffer) {
+                    buffered.add(packet.data);
+                }
+                closes.offer(buffered);
+            }
+        });
+        socket.open();
+        // so that stopping the server is sure to cut the handshake off
+        this.connected.await();
+        return closes;
+    }
+
+    private static boolean accepted(CompletionStage<Void> sent) {
+        return !sent.toCompletableFuture().isCompletedExceptionally();
+    }
+
+    private static List<Object> list(Object... items) {
+        List<Object> list = new ArrayList<Object>();
+        for (Object item : items) {
+            list.add(item);
+        }
+        return list;
+    }
+}
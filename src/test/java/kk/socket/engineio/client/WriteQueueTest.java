@@ -0,0 +1,148 @@
+package kk.socket.engineio.client;
+
+import kk.socket.engineio.parser.Packet;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+@RunWith(JUnit4.class)
+public class WriteQueueTest {
+
+    @Test
+    public void pollInOrder() {
+        WriteQueue queue = new WriteQueue();
+        queue.offer(message("a"));
+        queue.offer(message("b"));
+        assertThat(queue.size(), is(2));
+        assertThat(queue.poll().data, is((Object)"a"));
+        assertThat(queue.poll().data, is((Object)"b"));
+        assertThat(queue.poll(), is(nullValue()));
+        assertThat(queue.isEmpty(), is(true));
+    }
+
+    @Test
+    public void exposeContiguousRange() {
+        WriteQueue queue = new WriteQueue();
+        queue.offer(message("a"));
+        queue.offer(message("b"));
+        queue.poll();
+
+        Packet[] array = queue.array();
+        int offset = queue.offset(0);
+        assertThat(queue.contiguous(0), is(1));
+        assertThat(array[offset].data, is((Object)"b"));
+        assertThat(queue.contiguous(1), is(0));
+    }
+
+    @Test
+    public void stopRangeAtWrapAround() {
+        WriteQueue queue = new WriteQueue();
+        int capacity = queue.array().length;
+        for (int i = 0; i < capacity; i++) {
+            queue.offer(message(String.valueOf(i)));
+        }
+        for (int i = 0; i < capacity - 2; i++) {
+            queue.poll();
+        }
+        queue.offer(message("x"));
+        queue.offer(message("y"));
+
+        assertThat(queue.array().length, is(capacity));
+        assertThat(queue.size(), is(4));
+        assertThat(queue.contiguous(0), is(2));
+        assertThat(queue.contiguous(2), is(2));
+        assertThat(queue.array()[queue.offset(2)].data, is((Object)"x"));
+        assertThat(data(queue), is(Arrays.<Object>asList(String.valueOf(capacity - 2), String.valueOf(capacity - 1), "x", "y")));
+    }
+
+    @Test
+    public void growKeepsOrder() {
+        WriteQueue queue = new WriteQueue();
+        int capacity = queue.array().length;
+        queue.offer(message("first"));
+        queue.offer(message("second"));
+        queue.poll();
+        List<Object> expected = new ArrayList<Object>();
+        expected.add("second");
+        for (int i = 0; i < capacity * 2 + 1; i++) {
+            queue.offer(message(String.valueOf(i)));
+            expected.add(String.valueOf(i));
+        }
+
+        assertThat(queue.array().length, is(capacity * 4));
+        assertThat(queue.contiguous(0), is(expected.size()));
+        assertThat(data(queue), is(expected));
+    }
+
+    @Test
+    public void compactWrappedRing() {
+        WriteQueue queue = new WriteQueue();
+        int capacity = queue.array().length;
+        for (int i = 0; i < capacity; i++) {
+            queue.offer(message(String.valueOf(i)));
+        }
+        for (int i = 0; i < capacity - 2; i++) {
+            queue.poll();
+        }
+        queue.offer(message("x"));
+        queue.offer(message("y"));
+        Packet[] wrapped = queue.array();
+
+        queue.compact();
+        assertThat(queue.array().length, is(capacity));
+        assertThat(queue.offset(0), is(0));
+        assertThat(queue.contiguous(0), is(queue.size()));
+        assertThat(data(queue), is(Arrays.<Object>asList(String.valueOf(capacity - 2), String.valueOf(capacity - 1), "x", "y")));
+        // a transport still reading the old array sees the same packets
+        assertThat(wrapped[0].data, is((Object)"x"));
+
+        Packet[] compacted = queue.array();
+        queue.compact();
+        assertThat(queue.array(), is(sameInstance(compacted)));
+    }
+
+    @Test
+    public void startOverOnceEmpty() {
+        WriteQueue queue = new WriteQueue();
+        queue.offer(message("a"));
+        queue.offer(message("b"));
+        queue.poll();
+        assertThat(queue.offset(0), is(1));
+        queue.poll();
+        queue.offer(message("c"));
+        assertThat(queue.offset(0), is(0));
+    }
+
+    @Test
+    public void removeFromTheMiddle() {
+        WriteQueue queue = new WriteQueue();
+        for (String data : new String[] {"a", "b", "c", "d"}) {
+            queue.offer(message(data));
+        }
+        assertThat(queue.remove(1).data, is((Object)"b"));
+        assertThat(data(queue), is(Arrays.<Object>asList("a", "c", "d")));
+
+        queue.clear();
+        assertThat(queue.isEmpty(), is(true));
+        assertThat(queue.iterator().hasNext(), is(false));
+    }
+
+    private static Packet<String> message(String data) {
+        return new Packet<String>(Packet.MESSAGE, data);
+    }
+
+    private static List<Object> data(WriteQueue queue) {
+        List<Object> data = new ArrayList<Object>();
+        for (Packet packet : queue) {
+            data.add(packet.data);
+        }
+        return data;
+    }
+}
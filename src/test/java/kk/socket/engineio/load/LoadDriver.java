@@ -0,0 +1,316 @@
+package kk.socket.engineio.load;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import kk.socket.emitter.Emitter;
+import kk.socket.engineio.client.Socket;
+import kk.socket.engineio.client.transports.Polling;
+import kk.socket.engineio.client.transports.WebSocket;
+import kk.socket.engineio.server.EngineIOServer;
+import kk.socket.thread.EventLoopGroup;
+import okhttp3.OkHttpClient;
+
+/**
+ * Opens many {@link Socket}s against an in-process {@link EngineIOServer} and measures
+ * connect latency, message round-trip time and heap per connection, with no network
+ * and no Node server.
+ *
+ * <p>Each connection sends its messages one after another, each waiting for the echo
+ * of the previous one; connections run concurrently. Heap per connection is measured
+ * after a GC with all connections open, and includes the stand-in server's side of
+ * each session.</p>
+ *
+ * <pre>
+ * mvn test-compile -Dexec.skip=true
+ * java -cp "target/classes:target/test-classes:$(mvn -q dependency:build-classpath -Dmdep.outputFile=/dev/stdout)" \
+ *     kk.socket.engineio.load.LoadDriver --connections 500 --messages 100 --transport websocket
+ * </pre>
+ */
+public class LoadDriver {
+
+    private static final String PREFIX = "rtt:";
+
+    private int connections = 100;
+    private int messages = 100;
+    private int messageSize = 64;
+    private String transport = Polling.NAME;
+    private long timeout = TimeUnit.MINUTES.toMillis(5);
+    private int eventLoops;
+    private boolean virtualThreads;
+
+    public LoadDriver connections(int connections) {
+        this.connections = connections;
+        return this;
+    }
+
+    public LoadDriver messages(int messages) {
+        this.messages = messages;
+        return this;
+    }
+
+    public LoadDriver messageSize(int messageSize) {
+        this.messageSize = messageSize;
+        return this;
+    }
+
+    /**
+     * @param transport {@link Polling#NAME}, which upgrades to websocket, or {@link WebSocket#NAME} only.
+     */
+    public LoadDriver transport(String transport) {
+        this.transport = transport;
+        return this;
+    }
+
+    /**
+     * @param eventLoops the size of an {@link EventLoopGroup} shared by all connections, or 0
+     *                   to give each connection a thread of its own.
+     */
+    public LoadDriver eventLoops(int eventLoops) {
+        this.eventLoops = eventLoops;
+        return this;
+    }
+
+    /**
+     * @param virtualThreads whether each connection runs on a virtual thread; needs JDK 21.
+     */
+    public LoadDriver virtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+        return this;
+    }
+
+    public LoadDriver timeout(long timeout, TimeUnit unit) {
+        this.timeout = unit.toMillis(timeout);
+        return this;
+    }
+
+    public Report run() throws IOException, InterruptedException {
+        EngineIOServer server = new EngineIOServer();
+        server.start();
+        OkHttpClient client = new OkHttpClient.Builder()
+                .readTimeout(0, TimeUnit.MILLISECONDS)
+                .build();
+        client.dispatcher().setMaxRequests(Integer.MAX_VALUE);
+        client.dispatcher().setMaxRequestsPerHost(Integer.MAX_VALUE);
+        EventLoopGroup group = this.eventLoops > 0 ? new EventLoopGroup(this.eventLoops) : null;
+
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long heapBefore = usedHeap(memory);
+
+        final Report report = new Report(this.connections, this.messages);
+        final CountDownLatch opened = new CountDownLatch(this.connections);
+        final CountDownLatch finished = new CountDownLatch(this.connections);
+        final String padding = padding(this.messageSize);
+        List<Socket> sockets = new ArrayList<Socket>();
+        try {
+            for (int i = 0; i < this.connections; i++) {
+                Socket.Options opts = new Socket.Options();
+                opts.hostname = server.getHostName();
+                opts.port = server.getPort();
+                opts.callFactory = client;
+                opts.webSocketFactory = client;
+                if (group != null) {
+                    opts.eventLoopGroup = group;
+                } else if (this.virtualThreads) {
+                    opts.virtualThreads = true;
+                }
+                opts.transports = WebSocket.NAME.equals(this.transport) ?
+                        new String[] {WebSocket.NAME} : new String[] {Polling.NAME, WebSocket.NAME};
+                final Socket socket = new Socket(opts);
+                sockets.add(socket);
+
+                final long start = System.nanoTime();
+                socket.on(Socket.EVENT_OPEN, new Emitter.Listener() {
+                    @Override
+                    public void call(Object... args) {
+                        report.connectNanos[report.opened.getAndIncrement()] = System.nanoTime() - start;
+                        opened.countDown();
+                    }
+                }).on(Socket.EVENT_ERROR, new Emitter.Listener() {
+                    @Override
+                    public void call(Object... args) {
+                        report.errors.incrementAndGet();
+                    }
+                });
+                socket.open();
+            }
+
+            if (!opened.await(this.timeout, TimeUnit.MILLISECONDS)) {
+                throw new IllegalStateException(String.format("only %d of %d connections opened",
+                        this.connections - opened.getCount(), this.connections));
+            }
+            report.heapPerConnection = (usedHeap(memory) - heapBefore) / this.connections;
+
+            for (Socket socket : sockets) {
+                this.startExchange(socket, padding, report, finished);
+            }
+            if (!finished.await(this.timeout, TimeUnit.MILLISECONDS)) {
+                throw new IllegalStateException(String.format("only %d of %d connections finished",
+                        this.connections - finished.getCount(), this.connections));
+            }
+            return report;
+        } finally {
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+            server.close();
+            if (group != null) {
+                group.shutdown();
+            }
+            client.dispatcher().executorService().shutdown();
+            client.connectionPool().evictAll();
+        }
+    }
+
+    private void startExchange(final Socket socket, final String padding, final Report report, final CountDownLatch finished) {
+        final int[] sent = new int[] {0};
+        final long[] sentAt = new long[1];
+        socket.on(Socket.EVENT_MESSAGE, new Emitter.Listener() {
+            @Override
+            public void call(Object... args) {
+                if (!(args[0] instanceof String) || !((String)args[0]).startsWith(PREFIX)) {
+                    return;
+                }
+
+                report.record(System.nanoTime() - sentAt[0]);
+                if (sent[0] == LoadDriver.this.messages) {
+                    finished.countDown();
+                    return;
+                }
+                sentAt[0] = System.nanoTime();
+                socket.send(PREFIX + sent[0]++ + padding);
+            }
+        });
+
+        if (this.messages == 0) {
+            finished.countDown();
+            return;
+        }
+        sentAt[0] = System.nanoTime();
+        socket.send(PREFIX + sent[0]++ + padding);
+    }
+
+    private static String padding(int size) {
+        char[] chars = new char[Math.max(0, size)];
+        Arrays.fill(chars, 'x');
+        return ":" + new String(chars);
+    }
+
+    private static long usedHeap(MemoryMXBean memory) throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadDriver driver = new LoadDriver();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--connections":
+                    driver.connections(Integer.parseInt(value));
+                    break;
+                case "--messages":
+                    driver.messages(Integer.parseInt(value));
+                    break;
+                case "--message-size":
+                    driver.messageSize(Integer.parseInt(value));
+                    break;
+                case "--transport":
+                    driver.transport(value);
+                    break;
+                case "--event-loops":
+                    driver.eventLoops(Integer.parseInt(value));
+                    break;
+                case "--virtual-threads":
+                    driver.virtualThreads(Boolean.parseBoolean(value));
+                    break;
+                case "--timeout":
+                    driver.timeout(Long.parseLong(value), TimeUnit.SECONDS);
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown option: " + args[i]);
+            }
+        }
+        System.out.println(driver.run());
+        System.exit(0);
+    }
+
+
+    public static class Report {
+
+        final long[] connectNanos;
+        final long[] rttNanos;
+        final AtomicInteger opened = new AtomicInteger();
+        final AtomicInteger received = new AtomicInteger();
+        final AtomicInteger errors = new AtomicInteger();
+        long heapPerConnection;
+
+        Report(int connections, int messages) {
+            this.connectNanos = new long[connections];
+            this.rttNanos = new long[connections * messages];
+        }
+
+        void record(long rtt) {
+            this.rttNanos[this.received.getAndIncrement()] = rtt;
+        }
+
+        public int messagesReceived() {
+            return this.received.get();
+        }
+
+        public int errors() {
+            return this.errors.get();
+        }
+
+        public long heapPerConnection() {
+            return this.heapPerConnection;
+        }
+
+        /**
+         * @param percentile from 0 to 100.
+         * @return the connect latency at that percentile, in microseconds.
+         */
+        public long connectMicros(double percentile) {
+            return percentile(this.connectNanos, this.opened.get(), percentile) / 1000;
+        }
+
+        /**
+         * @param percentile from 0 to 100.
+         * @return the round-trip time at that percentile, in microseconds.
+         */
+        public long rttMicros(double percentile) {
+            return percentile(this.rttNanos, this.received.get(), percentile) / 1000;
+        }
+
+        private static long percentile(long[] values, int count, double percentile) {
+            if (count == 0) return 0;
+            long[] sorted = Arrays.copyOf(values, count);
+            Arrays.sort(sorted);
+            int index = (int)Math.ceil(percentile / 100 * count) - 1;
+            return sorted[Math.max(0, Math.min(count - 1, index))];
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "connections: %d, errors: %d%n" +
+                    "connect (us): p50 %d, p90 %d, p99 %d, max %d%n" +
+                    "rtt (us):     p50 %d, p90 %d, p99 %d, p99.9 %d, max %d (%d messages)%n" +
+                    "heap per connection: %d bytes",
+                    this.opened.get(), this.errors(),
+                    this.connectMicros(50), this.connectMicros(90), this.connectMicros(99), this.connectMicros(100),
+                    this.rttMicros(50), this.rttMicros(90), this.rttMicros(99), this.rttMicros(99.9), this.rttMicros(100),
+                    this.messagesReceived(), this.heapPerConnection);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package kk.socket.engineio.load;
+
+import java.util.concurrent.TimeUnit;
+
+import kk.socket.engineio.client.transports.Polling;
+import kk.socket.engineio.client.transports.WebSocket;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+@RunWith(JUnit4.class)
+public class LoadDriverTest {
+
+    @Test(timeout = 60000)
+    public void polling() throws Exception {
+        LoadDriver.Report report = new LoadDriver()
+                .connections(5)
+                .messages(20)
+                .transport(Polling.NAME)
+                .timeout(30, TimeUnit.SECONDS)
+                .run();
+        assertThat(report.errors(), is(0));
+        assertThat(report.messagesReceived(), is(100));
+        assertThat(report.rttMicros(99), greaterThanOrEqualTo(report.rttMicros(50)));
+        assertThat(report.connectMicros(50), greaterThan(0L));
+    }
+
+    @Test(timeout = 60000)
+    public void websocket() throws Exception {
+        LoadDriver.Report report = new LoadDriver()
+                .connections(5)
+                .messages(20)
+                .transport(WebSocket.NAME)
+                .timeout(30, TimeUnit.SECONDS)
+                .run();
+        assertThat(report.errors(), is(0));
+        assertThat(report.messagesReceived(), is(100));
+    }
+
+    @Test(timeout = 60000)
+    public void sharedEventLoops() throws Exception {
+        LoadDriver.Report report = new LoadDriver()
+                .connections(20)
+                .messages(10)
+                .transport(WebSocket.NAME)
+                .eventLoops(2)
+                .timeout(30, TimeUnit.SECONDS)
+                .run();
+        assertThat(report.errors(), is(0));
+        assertThat(report.messagesReceived(), is(200));
+    }
+}
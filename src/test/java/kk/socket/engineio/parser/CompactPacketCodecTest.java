@@ -0,0 +1,86 @@
+package kk.socket.engineio.parser;
+
+import kk.socket.utf8.UTF8Exception;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+@RunWith(JUnit4.class)
+public class CompactPacketCodecTest {
+
+    static final String ERROR_DATA = "parser error";
+
+    private final PacketCodec codec = CompactPacketCodec.FACTORY.create();
+
+    @Test
+    public void encodeAndDecodePayloads() throws UTF8Exception {
+        final byte[] binary = new byte[300];
+        for (int i = 0; i < binary.length; i++) {
+            binary[i] = (byte)i;
+        }
+        codec.encodePayload(new Packet[] {
+            new Packet<String>(Packet.MESSAGE, "cash money €€€"),
+            new Packet<byte[]>(Packet.MESSAGE, binary),
+            new Packet<String>(Packet.PING),
+        }, new Parser.EncodeCallback<byte[]>() {
+            @Override
+            public void call(byte[] data) {
+                // flags byte, one-byte varint, then UTF-8 "cash money €€€"
+                assertThat(data[0], is((byte)4));
+                assertThat(data[1], is((byte)20));
+
+                final int[] calls = new int[] {0};
+                codec.decodePayload(data, new Parser.DecodePayloadCallback() {
+                    @Override
+                    public boolean call(Packet packet, int index, int total) {
+                        calls[0]++;
+                        assertThat(total, is(3));
+                        if (index == 0) {
+                            assertThat(packet.type, is(Packet.MESSAGE));
+                            assertThat((String)packet.data, is("cash money €€€"));
+                        } else if (index == 1) {
+                            assertThat(packet.type, is(Packet.MESSAGE));
+                            assertThat((byte[])packet.data, is(binary));
+                        } else {
+                            assertThat(packet.type, is(Packet.PING));
+                            assertThat(packet.data, is(nullValue()));
+                        }
+                        return true;
+                    }
+                });
+                assertThat(calls[0], is(3));
+            }
+        });
+    }
+
+    @Test
+    public void decodePayloadBadFormat() {
+        byte[][] payloads = new byte[][] {
+            {9, 0},
+            {4, 5, 'a'},
+            {4, (byte)0x80},
+            {4, 2, (byte)0xC3, 'a'},
+        };
+        for (byte[] payload : payloads) {
+            final int[] calls = new int[] {0};
+            codec.decodePayload(payload, new Parser.DecodePayloadCallback() {
+                @Override
+                public boolean call(Packet packet, int index, int total) {
+                    calls[0]++;
+                    assertThat(packet.type, is(Packet.ERROR));
+                    assertThat((String)packet.data, is(ERROR_DATA));
+                    return true;
+                }
+            });
+            assertThat(calls[0], is(1));
+        }
+    }
+
+    @Test
+    public void protocol() {
+        assertThat(codec.protocol(), is(Parser.PROTOCOL));
+    }
+}
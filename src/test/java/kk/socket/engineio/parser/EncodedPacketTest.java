@@ -0,0 +1,80 @@
+package kk.socket.engineio.parser;
+
+import kk.socket.utf8.UTF8Exception;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+@RunWith(JUnit4.class)
+public class EncodedPacketTest {
+
+    private static final PacketCodec[] CODECS = new PacketCodec[] {
+        V3PacketCodec.FACTORY.create(),
+        CompactPacketCodec.FACTORY.create(),
+        V4PacketCodec.FACTORY.create(),
+    };
+
+    @Test
+    public void cacheFrames() throws UTF8Exception {
+        EncodedPacket<String> text = new EncodedPacket<String>(Packet.MESSAGE, "cash money €€€");
+        EncodedPacket<byte[]> binary = new EncodedPacket<byte[]>(Packet.MESSAGE, new byte[] {1, 2, 3});
+        for (PacketCodec codec : CODECS) {
+            assertThat(encodePacket(codec, text), is(encodePacket(codec, new Packet<String>(text.type, text.data))));
+            assertThat(encodePacket(codec, text), is(sameInstance(encodePacket(codec, text))));
+            assertThat(encodePacket(codec, binary), is(encodePacket(codec, new Packet<byte[]>(binary.type, binary.data))));
+            assertThat(encodePacket(codec, binary), is(sameInstance(encodePacket(codec, binary))));
+        }
+    }
+
+    @Test
+    public void cachePayloads() throws UTF8Exception {
+        EncodedPacket<String> text = new EncodedPacket<String>(Packet.MESSAGE, "cash money €€€");
+        EncodedPacket<byte[]> binary = new EncodedPacket<byte[]>(Packet.MESSAGE, new byte[] {1, 2, 3});
+        Packet[] packets = new Packet[] {
+            new Packet<String>(Packet.MESSAGE, "a"), new Packet<String>(Packet.PING),
+            text, binary,
+            new Packet<byte[]>(Packet.MESSAGE, new byte[] {4}), text,
+        };
+        Packet[] plain = new Packet[packets.length];
+        for (int i = 0; i < packets.length; i++) {
+            plain[i] = new Packet<Object>(packets[i].type, packets[i].data);
+        }
+
+        for (PacketCodec codec : CODECS) {
+            assertThat(codec.getClass().getSimpleName(), encodePayload(codec, packets), is(encodePayload(codec, plain)));
+            assertThat(text.payload(codec), is(sameInstance(text.payload(codec))));
+        }
+    }
+
+    @Test
+    public void cacheByCodecClass() throws UTF8Exception {
+        EncodedPacket<String> text = new EncodedPacket<String>(Packet.MESSAGE, "a");
+        assertThat(text.payload(new V3PacketCodec()), is(sameInstance(text.payload(new V3PacketCodec()))));
+        assertThat(text.payload(new V3PacketCodec()), is(not(text.payload(new CompactPacketCodec()))));
+    }
+
+    private static Object encodePacket(PacketCodec codec, Packet packet) throws UTF8Exception {
+        final Object[] result = new Object[1];
+        codec.encodePacket(packet, new Parser.EncodeCallback() {
+            @Override
+            public void call(Object data) {
+                result[0] = data;
+            }
+        });
+        return result[0];
+    }
+
+    private static byte[] encodePayload(PacketCodec codec, Packet[] packets) throws UTF8Exception {
+        final byte[][] result = new byte[1][];
+        codec.encodePayload(packets, new Parser.EncodeCallback<byte[]>() {
+            @Override
+            public void call(byte[] data) {
+                result[0] = data;
+            }
+        });
+        return result[0];
+    }
+}
@@ -0,0 +1,107 @@
+package kk.socket.engineio.parser;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+@RunWith(JUnit4.class)
+public class PacketPoolTest {
+
+    @Test
+    public void recyclePackets() {
+        PacketPool pool = new PacketPool(4, 4, true);
+        Packet<String> packet = pool.acquire(Packet.MESSAGE, "a");
+        assertThat(pool.outstanding(), is(1));
+        assertThat(packet.release(), is(true));
+        assertThat(packet.type, is(nullValue()));
+        assertThat(packet.data, is(nullValue()));
+        assertThat(pool.outstanding(), is(0));
+
+        Packet<String> reused = pool.acquire(Packet.PING, "b");
+        assertThat(reused, is(sameInstance(packet)));
+        assertThat(reused.type, is(Packet.PING));
+        assertThat(reused.data, is("b"));
+        reused.release();
+        assertThat(pool.outstanding(), is(0));
+    }
+
+    @Test
+    public void retainDelaysRecycling() {
+        PacketPool pool = new PacketPool(4, 4, true);
+        Packet<String> packet = pool.acquire(Packet.MESSAGE, "a").retain();
+        assertThat(packet.release(), is(false));
+        assertThat(packet.data, is("a"));
+        assertThat(packet.release(), is(true));
+        assertThat(pool.outstanding(), is(0));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void releaseTwice() {
+        Packet<String> packet = new PacketPool(4, 4, true).acquire(Packet.MESSAGE, "a");
+        packet.release();
+        packet.release();
+    }
+
+    @Test
+    public void unpooledPacketsAreIgnored() {
+        Packet<String> packet = new Packet<String>(Packet.MESSAGE, "a");
+        assertThat(packet.retain(), is(sameInstance(packet)));
+        assertThat(packet.release(), is(false));
+        assertThat(packet.data, is("a"));
+        assertThat(Parser.err.release(), is(false));
+    }
+
+    @Test
+    public void recycleDecodedBuffers() {
+        PacketPool pool = new PacketPool(4, 4, true);
+        Packet<byte[]> packet = Parser.decodePacket(new byte[] {4, 1, 2, 3}, pool);
+        assertThat(packet.type, is(Packet.MESSAGE));
+        assertThat(packet.data, is(new byte[] {1, 2, 3}));
+        byte[] buffer = packet.data;
+        packet.release();
+
+        Packet<byte[]> other = Parser.decodePacket(new byte[] {4, 1, 2}, pool);
+        assertThat(other.data, is(not(sameInstance(buffer))));
+        Packet<byte[]> same = Parser.decodePacket(new byte[] {4, 7, 8, 9}, pool);
+        assertThat(same.data, is(sameInstance(buffer)));
+        assertThat(same.data, is(new byte[] {7, 8, 9}));
+        other.release();
+        same.release();
+        assertThat(pool.outstanding(), is(0));
+    }
+
+    @Test
+    public void applicationBuffersAreNotRecycled() {
+        PacketPool pool = new PacketPool(4, 4, true);
+        byte[] data = new byte[] {1, 2, 3};
+        pool.acquire(Packet.MESSAGE, data).release();
+        assertThat(pool.acquireBuffer(3), is(not(sameInstance(data))));
+    }
+
+    @Test
+    public void discardStopsTracking() {
+        PacketPool pool = new PacketPool(4, 4, true);
+        Packet<String> packet = pool.acquire(Packet.MESSAGE, "a");
+        pool.discard(packet);
+        assertThat(pool.outstanding(), is(0));
+        assertThat(packet.release(), is(false));
+        assertThat(packet.data, is("a"));
+        assertThat(pool.acquire(Packet.MESSAGE, "b"), is(not(sameInstance(packet))));
+    }
+
+    @Test
+    public void detectLeaks() throws InterruptedException {
+        PacketPool pool = new PacketPool(4, 4, true);
+        pool.acquire(Packet.MESSAGE, "leaked");
+        pool.acquire(Packet.MESSAGE, "released").release();
+
+        for (int i = 0; i < 50 && pool.leaks() == 0; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertThat(pool.leaks(), is(1));
+    }
+}
@@ -1,5 +1,11 @@
 package kk.socket.engineio.parser;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import kk.socket.utf8.UTF8;
 import kk.socket.utf8.UTF8Exception;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -415,4 +421,260 @@ public class ParserTest {
             }
         });
     }
+
+    @Test
+    public void decodeBinaryPayloadAsReadOnlySlices() throws UTF8Exception  {
+        final byte[] firstBuffer = new byte[] {1, 2, 3};
+        Parser.encodePayload(new Packet[]{
+            new Packet<byte[]>(Packet.MESSAGE, firstBuffer),
+            new Packet<String>(Packet.MESSAGE, "hello €"),
+        }, new Parser.EncodeCallback<byte[]>() {
+            @Override
+            public void call(byte[] encoded) {
+                Parser.decodePayload(ByteBuffer.wrap(encoded), new Parser.DecodePayloadCallback() {
+                    @Override
+                    public boolean call(Packet packet, int index, int total) {
+                        assertThat(total, is(2));
+                        assertThat(packet.type, is(Packet.MESSAGE));
+                        if (index == 0) {
+                            ByteBuffer data = (ByteBuffer)packet.data;
+                            assertThat(data.isReadOnly(), is(true));
+                            byte[] bytes = new byte[data.remaining()];
+                            data.get(bytes);
+                            assertThat(bytes, is(firstBuffer));
+                        } else {
+                            assertThat((String)packet.data, is("hello €"));
+                        }
+                        return true;
+                    }
+                });
+            }
+        });
+    }
+
+    @Test
+    public void decodeBinaryPayloadStopsWhenCallbackReturnsFalse() throws UTF8Exception  {
+        final int[] calls = new int[] {0};
+        Parser.encodePayload(new Packet[]{
+            new Packet<String>(Packet.CLOSE),
+            new Packet<String>(Packet.MESSAGE, "hello"),
+        }, new Parser.EncodeCallback<byte[]>() {
+            @Override
+            public void call(byte[] encoded) {
+                Parser.decodePayload(encoded, new Parser.DecodePayloadCallback() {
+                    @Override
+                    public boolean call(Packet packet, int index, int total) {
+                        calls[0]++;
+                        return false;
+                    }
+                });
+            }
+        });
+        assertThat(calls[0], is(1));
+    }
+
+    @Test
+    public void decodeBinaryPayloadBadFormat() {
+        byte[][] payloads = new byte[][] {
+            {0, 5, (byte)255, '4'},
+            {0, 1},
+            {1, 0, (byte)255},
+            {0, 12, (byte)255, '4'},
+        };
+        for (byte[] payload : payloads) {
+            final int[] calls = new int[] {0};
+            Parser.decodePayload(payload, new Parser.DecodePayloadCallback() {
+                @Override
+                public boolean call(Packet packet, int index, int total) {
+                    calls[0]++;
+                    assertThat(packet.type, is(Packet.ERROR));
+                    assertThat(index + 1 == total, is(true));
+                    return true;
+                }
+            });
+            assertThat(calls[0], is(1));
+        }
+    }
+
+    @Test
+    public void encodePayloadIntoBuffer() throws UTF8Exception  {
+        final Packet[] packets = new Packet[]{
+            new Packet<byte[]>(Packet.MESSAGE, new byte[] {1, 2, 3}),
+            new Packet<String>(Packet.MESSAGE, "cash money €€€ \uD834\uDF06"),
+            new Packet<String>(Packet.PING),
+        };
+        int length = Parser.encodedPayloadLength(packets);
+        final ByteBuffer buffer = ByteBuffer.allocate(length + 4);
+        buffer.position(2);
+        Parser.encodePayload(packets, buffer);
+        assertThat(buffer.position(), is(length + 2));
+
+        Parser.decodePayload(ByteBuffer.wrap(buffer.array(), 2, length), new Parser.DecodePayloadCallback() {
+            @Override
+            public boolean call(Packet packet, int index, int total) {
+                assertThat(total, is(3));
+                if (index == 1) {
+                    assertThat((String)packet.data, is("cash money €€€ \uD834\uDF06"));
+                } else if (index == 2) {
+                    assertThat(packet.type, is(Packet.PING));
+                }
+                return true;
+            }
+        });
+    }
+
+    @Test(expected = UTF8Exception.class)
+    public void encodePayloadWithLoneSurrogate() throws UTF8Exception  {
+        Parser.encodePayload(new Packet[] {new Packet<String>(Packet.MESSAGE, "\uD800")}, ByteBuffer.allocate(16));
+    }
+
+    @Test
+    public void packetTypeCodes() {
+        String[] types = new String[] {
+            Packet.OPEN, Packet.CLOSE, Packet.PING, Packet.PONG, Packet.MESSAGE, Packet.UPGRADE, Packet.NOOP
+        };
+        for (int i = 0; i < types.length; i++) {
+            assertThat(Packet.codeOf(types[i]), is(i));
+            assertThat(Packet.codeOf(new String(types[i])), is(i));
+            assertThat(Packet.typeOf(i), is(types[i]));
+            assertThat(Parser.decodePacket(String.valueOf(i)).type, is(types[i]));
+        }
+        assertThat(new Packet<String>(Packet.MESSAGE_CODE, "a").type, is(Packet.MESSAGE));
+        assertThat(Packet.codeOf(Packet.ERROR), is(Packet.ERROR_CODE));
+        assertThat(Packet.codeOf("unknown"), is(Packet.UNKNOWN_CODE));
+        assertThat(Packet.typeOf(Packet.UNKNOWN_CODE), is(nullValue()));
+    }
+
+    @Test
+    public void packetCodeFollowsType() {
+        Packet<String> packet = new Packet<String>(Packet.PING);
+        assertThat(packet.code(), is(Packet.PING_CODE));
+        packet.type = Packet.PONG;
+        assertThat(packet.code(), is(Packet.PONG_CODE));
+        packet.type = new String(Packet.MESSAGE);
+        assertThat(packet.code(), is(Packet.MESSAGE_CODE));
+        packet.type = "unknown";
+        assertThat(packet.code(), is(Packet.UNKNOWN_CODE));
+        assertThat(new Packet<String>(42).code(), is(Packet.UNKNOWN_CODE));
+
+        PacketPool pool = new PacketPool(1, 0, false);
+        pool.acquire(Packet.PING, null).release();
+        assertThat(pool.acquire(Packet.MESSAGE, "a").code(), is(Packet.MESSAGE_CODE));
+    }
+
+    @Test
+    public void decodeTextPayloadFromBytes() throws UTF8Exception  {
+        final String[] messages = new String[] {"hello", "cash money €€€", "\uD834\uDF06"};
+        StringBuilder payload = new StringBuilder();
+        for (String message : messages) {
+            String encoded = "4" + UTF8.encode(message);
+            payload.append(encoded.length()).append(':').append(encoded);
+        }
+        payload.append("1:2");
+
+        final int[] calls = new int[] {0};
+        Parser.decodeTextPayload(payload.toString().getBytes(StandardCharsets.UTF_8), new Parser.DecodePayloadCallback<String>() {
+            @Override
+            public boolean call(Packet<String> packet, int index, int total) {
+                if (calls[0] < messages.length) {
+                    assertThat(packet.type, is(Packet.MESSAGE));
+                    assertThat(packet.data, is(messages[calls[0]]));
+                } else {
+                    assertThat(packet.type, is(Packet.PING));
+                    assertThat(packet.data, is(nullValue()));
+                }
+                calls[0]++;
+                return true;
+            }
+        });
+        assertThat(calls[0], is(messages.length + 1));
+    }
+
+    @Test
+    public void decodeTextPayloadFromBytesReportsSameIndexes() {
+        String payload = "6:4hello3:4hi1:2";
+        final List<String> fromString = new ArrayList<String>();
+        final List<String> fromBytes = new ArrayList<String>();
+        Parser.decodePayload(payload, new Parser.DecodePayloadCallback<String>() {
+            @Override
+            public boolean call(Packet<String> packet, int index, int total) {
+                fromString.add(index + "/" + total);
+                return true;
+            }
+        });
+        Parser.decodeTextPayload(payload.getBytes(StandardCharsets.UTF_8), new Parser.DecodePayloadCallback<String>() {
+            @Override
+            public boolean call(Packet<String> packet, int index, int total) {
+                fromBytes.add(index + "/" + total);
+                return true;
+            }
+        });
+
+        assertThat(fromBytes, is(fromString));
+        assertThat(fromBytes.get(fromBytes.size() - 1), is((payload.length() - 1) + "/" + payload.length()));
+    }
+
+    @Test
+    public void decodeTextPayloadFromBytesBadFormat() {
+        String[] payloads = new String[] {"", "1!", "))", "1:", "3:99:", "1:aa", "2:4\uffff", "2:4\u00ff"};
+        for (String payload : payloads) {
+            final int[] calls = new int[] {0};
+            Parser.decodeTextPayload(payload.getBytes(StandardCharsets.UTF_8), new Parser.DecodePayloadCallback<String>() {
+                @Override
+                public boolean call(Packet<String> packet, int index, int total) {
+                    calls[0]++;
+                    assertThat(packet.type, is(Packet.ERROR));
+                    assertThat(packet.data, is(ERROR_DATA));
+                    return true;
+                }
+            });
+            assertThat(payload, calls[0], is(1));
+        }
+    }
+
+    @Test
+    public void decodePayloadAsViews() throws UTF8Exception {
+        String encoded = "4" + UTF8.encode("cash money €€€");
+        String payload = "6:4hello" + encoded.length() + ":" + encoded + "1:2";
+        final List<Packet<CharSequence>> packets = new ArrayList<Packet<CharSequence>>();
+        Parser.decodePayloadAsViews(payload, new Parser.DecodePayloadCallback<CharSequence>() {
+            @Override
+            public boolean call(Packet<CharSequence> packet, int index, int total) {
+                packets.add(packet);
+                return true;
+            }
+        });
+
+        assertThat(packets.size(), is(3));
+        CharSequence hello = packets.get(0).data;
+        assertThat(hello, is(not(instanceOf(String.class))));
+        assertThat(hello.length(), is(5));
+        assertThat(hello.charAt(1), is('e'));
+        assertThat(hello.subSequence(1, 3).toString(), is("el"));
+        assertThat(hello.toString(), is("hello"));
+        assertThat(hello.toString(), is(sameInstance(hello.toString())));
+        assertThat(packets.get(1).data.toString(), is("cash money €€€"));
+        assertThat(packets.get(2).type, is(Packet.PING));
+        assertThat(packets.get(2).data, is(nullValue()));
+    }
+
+    @Test
+    public void decodeLargePayload() {
+        StringBuilder payload = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            String packet = "4" + i;
+            payload.append(packet.length()).append(':').append(packet);
+        }
+
+        final int[] calls = new int[] {0};
+        Parser.decodePayload(payload.toString(), new Parser.DecodePayloadCallback<String>() {
+            @Override
+            public boolean call(Packet<String> packet, int index, int total) {
+                assertThat(packet.type, is(Packet.MESSAGE));
+                assertThat(packet.data, is(String.valueOf(calls[0]++)));
+                return true;
+            }
+        });
+        assertThat(calls[0], is(500));
+    }
 }
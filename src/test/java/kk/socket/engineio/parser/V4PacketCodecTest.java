@@ -0,0 +1,156 @@
+package kk.socket.engineio.parser;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import kk.socket.utf8.UTF8Exception;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+@RunWith(JUnit4.class)
+public class V4PacketCodecTest {
+
+    static final String ERROR_DATA = "parser error";
+
+    private final PacketCodec codec = V4PacketCodec.FACTORY.create();
+
+    @Test
+    public void encodePayloadWithRecordSeparators() throws UTF8Exception {
+        codec.encodePayload(new Packet[] {
+            new Packet<String>(Packet.MESSAGE, "cash money €€€"),
+            new Packet<byte[]>(Packet.MESSAGE, new byte[] {1, 2, 3, 4}),
+            new Packet<String>(Packet.PONG),
+        }, new Parser.EncodeCallback<byte[]>() {
+            @Override
+            public void call(byte[] data) {
+                assertThat(new String(data, StandardCharsets.UTF_8), is("4cash money €€€\u001ebAQIDBA==\u001e3"));
+            }
+        });
+    }
+
+    @Test
+    public void decodePayloads() {
+        String payload = "0{\"sid\":\"abc\"}\u001e4cash money €€€\u001ebAQIDBA==\u001e2";
+        final List<Packet> packets = new ArrayList<Packet>();
+        Parser.DecodePayloadCallback callback = new Parser.DecodePayloadCallback() {
+            @Override
+            public boolean call(Packet packet, int index, int total) {
+                assertThat(total, is(4));
+                packets.add(packet);
+                return true;
+            }
+        };
+
+        @SuppressWarnings("unchecked")
+        Parser.DecodePayloadCallback<String> tempCallback = callback;
+        codec.decodePayload(payload, tempCallback);
+        codec.decodeTextPayload(payload.getBytes(StandardCharsets.UTF_8), tempCallback);
+
+        assertThat(packets.size(), is(8));
+        for (int i = 0; i < 8; i += 4) {
+            assertThat(packets.get(i).type, is(Packet.OPEN));
+            assertThat((String)packets.get(i).data, is("{\"sid\":\"abc\"}"));
+            assertThat(packets.get(i + 1).type, is(Packet.MESSAGE));
+            assertThat((String)packets.get(i + 1).data, is("cash money €€€"));
+            assertThat(packets.get(i + 2).type, is(Packet.MESSAGE));
+            assertThat((byte[])packets.get(i + 2).data, is(new byte[] {1, 2, 3, 4}));
+            assertThat(packets.get(i + 3).type, is(Packet.PING));
+        }
+    }
+
+    @Test
+    public void decodePayloadAsViews() {
+        String payload = "4hello\u001e4cash money €€€\u001ebAQIDBA==";
+        final List<Packet<CharSequence>> packets = new ArrayList<Packet<CharSequence>>();
+        codec.decodePayloadAsViews(payload, new Parser.DecodePayloadCallback<CharSequence>() {
+            @Override
+            public boolean call(Packet<CharSequence> packet, int index, int total) {
+                packets.add(packet);
+                return true;
+            }
+        });
+
+        assertThat(packets.size(), is(3));
+        assertThat(packets.get(0).data, is(not(instanceOf(String.class))));
+        assertThat(packets.get(0).data.toString(), is("hello"));
+        assertThat((Object)packets.get(1).data, is((Object)"cash money €€€"));
+        assertThat((Object)packets.get(2).data, is(instanceOf(byte[].class)));
+    }
+
+    @Test
+    public void decodePayloadBadFormat() {
+        String[] payloads = new String[] {"", "9", "4a\u001e\u001e4b", "b!!"};
+        for (String payload : payloads) {
+            final int[] errors = new int[] {0};
+            codec.decodePayload(payload, new Parser.DecodePayloadCallback<String>() {
+                @Override
+                public boolean call(Packet<String> packet, int index, int total) {
+                    if (Packet.ERROR.equals(packet.type)) {
+                        errors[0]++;
+                        assertThat(packet.data, is(ERROR_DATA));
+                    }
+                    return true;
+                }
+            });
+            assertThat(payload, errors[0], is(1));
+        }
+    }
+
+    @Test
+    public void binaryFramesCarryMessageData() throws UTF8Exception {
+        final byte[] data = new byte[] {1, 2, 3};
+        codec.encodePacket(new Packet<byte[]>(Packet.MESSAGE, data), new Parser.EncodeCallback<byte[]>() {
+            @Override
+            public void call(byte[] encoded) {
+                assertThat(encoded, is(data));
+                Packet<byte[]> packet = codec.decodePacket(encoded);
+                assertThat(packet.type, is(Packet.MESSAGE));
+                assertThat(packet.data, is(data));
+            }
+        });
+    }
+
+    @Test
+    public void negotiateVersion4() {
+        NegotiatingPacketCodec negotiating = new NegotiatingPacketCodec();
+        assertThat(negotiating.protocol(), is(4));
+        negotiating.decodePayload("0{\"sid\":\"abc\",\"maxPayload\":1000000}", new Parser.DecodePayloadCallback<String>() {
+            @Override
+            public boolean call(Packet<String> packet, int index, int total) {
+                assertThat(packet.type, is(Packet.OPEN));
+                return true;
+            }
+        });
+        assertThat(negotiating.protocol(), is(4));
+        assertThat(negotiating.payloadContentType(), is("text/plain;charset=UTF-8"));
+    }
+
+    @Test
+    public void negotiateVersion3() {
+        NegotiatingPacketCodec negotiating = new NegotiatingPacketCodec();
+        negotiating.decodePayload("14:0{\"sid\":\"abc\"}", new Parser.DecodePayloadCallback<String>() {
+            @Override
+            public boolean call(Packet<String> packet, int index, int total) {
+                assertThat(packet.type, is(Packet.OPEN));
+                return true;
+            }
+        });
+        assertThat(negotiating.protocol(), is(3));
+        assertThat(negotiating.payloadContentType(), is("application/octet-stream"));
+    }
+
+    @Test
+    public void keepVersion4OverWebSocket() {
+        // servers before engine.io 4.1 leave maxPayload out
+        NegotiatingPacketCodec websocket = new NegotiatingPacketCodec();
+        Packet<String> open = websocket.decodePacket("0{\"sid\":\"abc\",\"pingInterval\":25000,\"pingTimeout\":20000}");
+        assertThat(open.type, is(Packet.OPEN));
+        assertThat(websocket.protocol(), is(4));
+        assertThat(websocket.negotiated(), is(instanceOf(V4PacketCodec.class)));
+    }
+}
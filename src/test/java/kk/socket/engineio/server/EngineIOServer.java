@@ -0,0 +1,355 @@
+package kk.socket.engineio.server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import kk.socket.engineio.parser.Packet;
+import kk.socket.engineio.parser.Parser;
+import kk.socket.utf8.UTF8Exception;
+import okhttp3.HttpUrl;
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import okio.ByteString;
+
+/**
+ * An in-process stand-in for the engine.io protocol version 3 server in
+ * {@code src/test/resources/server.js}, built on {@link MockWebServer}. It speaks polling
+ * and websocket, including the upgrade from one to the other, greets every connection
+ * with "hi" and echoes every message back.
+ *
+ * <p>Sessions end when the client closes them; there is no server-side ping timeout.</p>
+ */
+public class EngineIOServer implements Closeable {
+
+    private static final Logger logger = Logger.getLogger(EngineIOServer.class.getName());
+
+    public static final String PATH = "/engine.io/";
+
+    private static final String BINARY_CONTENT_TYPE = "application/octet-stream";
+
+    private final MockWebServer server = new MockWebServer();
+    private final ConcurrentMap<String, Session> sessions = new ConcurrentHashMap<String, Session>();
+    private final AtomicLong ids = new AtomicLong();
+    private final long pingInterval;
+    private final long pingTimeout;
+    private volatile boolean answerPings = true;
+
+    public EngineIOServer() {
+        this(25000, 60000);
+    }
+
+    public EngineIOServer(long pingInterval, long pingTimeout) {
+        this.pingInterval = pingInterval;
+        this.pingTimeout = pingTimeout;
+    }
+
+    public void start() throws IOException {
+        this.server.setDispatcher(new EngineIODispatcher());
+        this.server.start();
+    }
+
+    public String getHostName() {
+        return this.server.getHostName();
+    }
+
+    public int getPort() {
+        return this.server.getPort();
+    }
+
+    /**
+     * Stops answering pings, so that clients time out.
+     */
+    public void ignorePings() {
+        this.answerPings = false;
+    }
+
+    public int sessionCount() {
+        return this.sessions.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        // release long polls so the server threads can stop
+        for (Session session : this.sessions.values()) {
+            session.close();
+        }
+        this.server.shutdown();
+    }
+
+    private Session newSession() {
+        Session session = new Session("sid" + this.ids.incrementAndGet());
+        this.sessions.put(session.id, session);
+        return session;
+    }
+
+    private Packet<String> openPacket(Session session, boolean upgradable) {
+        return new Packet<String>(Packet.OPEN, String.format(
+                "{\"sid\":\"%s\",\"upgrades\":[%s],\"pingInterval\":%d,\"pingTimeout\":%d}",
+                session.id, upgradable ? "\"websocket\"" : "", this.pingInterval, this.pingTimeout));
+    }
+
+    private static MockResponse payload(List<Packet> packets) {
+        final Buffer body = new Buffer();
+        try {
+            Parser.encodePayload(packets.toArray(new Packet[packets.size()]), new Parser.EncodeCallback<byte[]>() {
+                @Override
+                public void call(byte[] data) {
+                    body.write(data);
+                }
+            });
+        } catch (UTF8Exception e) {
+            throw new IllegalStateException(e);
+        }
+        return new MockResponse().setHeader("Content-Type", BINARY_CONTENT_TYPE).setBody(body);
+    }
+
+    private static MockResponse error(int code, String message) {
+        return new MockResponse().setResponseCode(400).setHeader("Content-Type", "application/json")
+                .setBody(String.format("{\"code\":%d,\"message\":\"%s\"}", code, message));
+    }
+
+    private static void sendFrame(final WebSocket ws, Packet packet) {
+        try {
+            Parser.encodePacket(packet, new Parser.EncodeCallback() {
+                @Override
+                public void call(Object data) {
+                    if (data instanceof String) {
+                        ws.send((String)data);
+                    } else {
+                        ws.send(ByteString.of((byte[])data));
+                    }
+                }
+            });
+        } catch (UTF8Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+
+    private class EngineIODispatcher extends Dispatcher {
+
+        @Override
+        public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+            // MockWebServer keeps every request it served; drop them so long runs keep a flat heap
+            while (EngineIOServer.this.server.takeRequest(0, TimeUnit.NANOSECONDS) != null) {}
+
+            HttpUrl url = request.getRequestUrl();
+            if (!PATH.equals(url.encodedPath())) {
+                return new MockResponse().setResponseCode(404);
+            }
+            if (!"3".equals(url.queryParameter("EIO"))) {
+                return error(5, "Unsupported protocol version");
+            }
+
+            String transport = url.queryParameter("transport");
+            String sid = url.queryParameter("sid");
+            if ("websocket".equals(transport)) {
+                return new MockResponse().withWebSocketUpgrade(new WebSocketHandler(sid));
+            }
+            if (!"polling".equals(transport)) {
+                return error(0, "Transport unknown");
+            }
+
+            if (sid == null) {
+                Session session = EngineIOServer.this.newSession();
+                List<Packet> packets = new ArrayList<Packet>();
+                packets.add(EngineIOServer.this.openPacket(session, true));
+                MockResponse response = payload(packets);
+                session.send(new Packet<String>(Packet.MESSAGE, "hi"));
+                return response;
+            }
+
+            Session session = EngineIOServer.this.sessions.get(sid);
+            if (session == null) {
+                return error(1, "Session ID unknown");
+            }
+            if ("POST".equals(request.getMethod())) {
+                return session.onPayload(request.getBody().readByteArray());
+            }
+            return session.poll();
+        }
+    }
+
+
+    private class Session {
+
+        final String id;
+        private final LinkedBlockingQueue<Packet> buffer = new LinkedBlockingQueue<Packet>();
+        private WebSocket ws;
+        private volatile boolean upgrading;
+        private volatile boolean closed;
+
+        Session(String id) {
+            this.id = id;
+        }
+
+        synchronized void send(Packet packet) {
+            if (this.closed) return;
+
+            if (this.ws != null) {
+                sendFrame(this.ws, packet);
+            } else {
+                this.buffer.offer(packet);
+            }
+        }
+
+        MockResponse poll() throws InterruptedException {
+            List<Packet> packets = new ArrayList<Packet>();
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(EngineIOServer.this.pingInterval);
+            Packet first;
+            // like the real server, answer polls every 100ms during an upgrade so the client can pause polling
+            do {
+                first = this.buffer.poll(100, TimeUnit.MILLISECONDS);
+            } while (first == null && !this.upgrading && !this.closed && System.nanoTime() < deadline);
+            packets.add(first != null ? first : new Packet(Packet.NOOP));
+            this.buffer.drainTo(packets);
+            return payload(packets);
+        }
+
+        MockResponse onPayload(byte[] body) {
+            final boolean[] error = new boolean[] {false};
+            Parser.decodePayload(body, new Parser.DecodePayloadCallback() {
+                @Override
+                public boolean call(Packet packet, int index, int total) {
+                    if (Packet.ERROR.equals(packet.type)) {
+                        error[0] = true;
+                        return false;
+                    }
+                    Session.this.onPacket(packet);
+                    return true;
+                }
+            });
+            if (error[0]) {
+                return error(3, "Bad request");
+            }
+            return new MockResponse().setHeader("Content-Type", "text/html").setBody("ok");
+        }
+
+        void onPacket(Packet packet) {
+            switch (packet.code()) {
+                case Packet.PING_CODE:
+                    if (EngineIOServer.this.answerPings) {
+                        this.send(new Packet<Object>(Packet.PONG, packet.data));
+                    }
+                    break;
+                case Packet.MESSAGE_CODE:
+                    this.send(new Packet<Object>(Packet.MESSAGE, packet.data));
+                    break;
+                case Packet.CLOSE_CODE:
+                    this.close();
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        synchronized void attach(WebSocket ws) {
+            this.ws = ws;
+            List<Packet> pending = new ArrayList<Packet>();
+            this.buffer.drainTo(pending);
+            for (Packet packet : pending) {
+                sendFrame(ws, packet);
+            }
+        }
+
+        void upgrading() {
+            this.upgrading = true;
+            this.buffer.offer(new Packet(Packet.NOOP));
+        }
+
+        synchronized boolean attachedTo(WebSocket ws) {
+            return this.ws == ws;
+        }
+
+        void close() {
+            this.closed = true;
+            EngineIOServer.this.sessions.remove(this.id, this);
+        }
+    }
+
+
+    private class WebSocketHandler extends WebSocketListener {
+
+        private final String sid;
+        private Session session;
+
+        WebSocketHandler(String sid) {
+            this.sid = sid;
+        }
+
+        @Override
+        public void onOpen(WebSocket ws, Response response) {
+            if (this.sid == null) {
+                this.session = EngineIOServer.this.newSession();
+                sendFrame(ws, EngineIOServer.this.openPacket(this.session, false));
+                this.session.attach(ws);
+                this.session.send(new Packet<String>(Packet.MESSAGE, "hi"));
+                return;
+            }
+
+            this.session = EngineIOServer.this.sessions.get(this.sid);
+            if (this.session == null) {
+                ws.close(1008, "Session ID unknown");
+            }
+        }
+
+        @Override
+        public void onMessage(WebSocket ws, String text) {
+            this.onPacket(ws, Parser.decodePacket(text));
+        }
+
+        @Override
+        public void onMessage(WebSocket ws, ByteString bytes) {
+            this.onPacket(ws, Parser.decodePacket(bytes.toByteArray()));
+        }
+
+        private void onPacket(WebSocket ws, Packet packet) {
+            if (this.session == null) return;
+
+            if (!this.session.attachedTo(ws)) {
+                // upgrade probe
+                if (Packet.PING.equals(packet.type) && "probe".equals(packet.data)) {
+                    sendFrame(ws, new Packet<String>(Packet.PONG, "probe"));
+                    this.session.upgrading();
+                } else if (Packet.UPGRADE.equals(packet.type)) {
+                    this.session.attach(ws);
+                } else {
+                    logger.fine(String.format("unexpected packet during upgrade: %s", packet.type));
+                }
+                return;
+            }
+            this.session.onPacket(packet);
+        }
+
+        @Override
+        public void onClosing(WebSocket ws, int code, String reason) {
+            ws.close(1000, null);
+            this.onClose(ws);
+        }
+
+        @Override
+        public void onFailure(WebSocket ws, Throwable t, Response response) {
+            this.onClose(ws);
+        }
+
+        private void onClose(WebSocket ws) {
+            if (this.session != null && this.session.attachedTo(ws)) {
+                this.session.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package kk.socket.thread;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+@RunWith(JUnit4.class)
+public class EventLoopGroupTest {
+
+    private EventLoopGroup group = new EventLoopGroup(2);
+
+    @After
+    public void tearDown() throws InterruptedException {
+        this.group.shutdown();
+        assertThat(this.group.awaitTermination(5, TimeUnit.SECONDS), is(true));
+    }
+
+    @Test
+    public void pinsKeysToLoops() {
+        Object key = new Object();
+        EventLoop loop = this.group.next(key);
+        for (int i = 0; i < 10; i++) {
+            assertThat(this.group.next(key), sameInstance(loop));
+        }
+    }
+
+    @Test
+    public void threadCountStaysFlat() throws InterruptedException {
+        final Set<Thread> threads = new HashSet<Thread>();
+        final CountDownLatch latch = new CountDownLatch(1000);
+        for (int i = 0; i < 1000; i++) {
+            this.group.next(new Object()).execute(new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (threads) {
+                        threads.add(Thread.currentThread());
+                    }
+                    latch.countDown();
+                }
+            });
+        }
+        latch.await(5, TimeUnit.SECONDS);
+        assertThat(threads.size(), is(2));
+    }
+
+    @Test
+    public void keepsOrder() throws InterruptedException {
+        final BlockingQueue<Integer> queue = new LinkedBlockingQueue<Integer>();
+        final EventLoop loop = this.group.next(this);
+        for (int i = 0; i < 100; i++) {
+            final int n = i;
+            EventThreadHelper.exec(new Runnable() {
+                @Override
+                public void run() {
+                    queue.offer(n);
+                }
+            }, loop);
+        }
+        for (int i = 0; i < 100; i++) {
+            assertThat(queue.take(), is(i));
+        }
+    }
+
+    @Test
+    public void daemonLikeTheCreatingThread() throws InterruptedException {
+        final boolean daemon = !Thread.currentThread().isDaemon();
+        final BlockingQueue<EventLoopGroup> groups = new LinkedBlockingQueue<EventLoopGroup>();
+        Thread creator = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                groups.offer(new EventLoopGroup(1));
+            }
+        });
+        creator.setDaemon(daemon);
+        creator.start();
+        EventLoopGroup group = groups.take();
+
+        final BlockingQueue<Boolean> queue = new LinkedBlockingQueue<Boolean>();
+        try {
+            group.next(this).execute(new Runnable() {
+                @Override
+                public void run() {
+                    queue.offer(Thread.currentThread().isDaemon());
+                }
+            });
+            assertThat(queue.take(), is(daemon));
+        } finally {
+            group.shutdown();
+        }
+    }
+
+    @Test
+    public void timersRunOnTheLoop() throws InterruptedException {
+        final BlockingQueue<Boolean> queue = new LinkedBlockingQueue<Boolean>();
+        final EventLoop loop = this.group.next(this);
+        queue.offer(loop.inEventLoop());
+        loop.schedule(new Runnable() {
+            @Override
+            public void run() {
+                queue.offer(loop.inEventLoop());
+            }
+        }, 10, TimeUnit.MILLISECONDS);
+
+        assertThat(queue.take(), is(false));
+        assertThat(queue.take(), is(true));
+    }
+}
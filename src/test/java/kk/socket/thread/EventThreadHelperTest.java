@@ -0,0 +1,88 @@
+package kk.socket.thread;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+@RunWith(JUnit4.class)
+public class EventThreadHelperTest {
+
+    private final ExecutorService service = Executors.newSingleThreadExecutor();
+    private final ExecutorService other = Executors.newSingleThreadExecutor();
+
+    @After
+    public void tearDown() {
+        this.service.shutdownNow();
+        this.other.shutdownNow();
+    }
+
+    @Test(timeout = 10000)
+    public void execRunsInlineOnAnyService() throws InterruptedException {
+        final BlockingQueue<Integer> queue = new LinkedBlockingQueue<Integer>();
+
+        EventThreadHelper.exec(new Runnable() {
+            @Override
+            public void run() {
+                queue.offer(0);
+                EventThreadHelper.exec(new Runnable() {
+                    @Override
+                    public void run() {
+                        queue.offer(1);
+                    }
+                }, EventThreadHelperTest.this.service);
+                queue.offer(2);
+            }
+        }, this.service);
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(queue.take(), is(i));
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void isCurrent() throws InterruptedException {
+        final BlockingQueue<Boolean> queue = new LinkedBlockingQueue<Boolean>();
+        queue.offer(EventThreadHelper.isCurrent(this.service));
+
+        EventThreadHelper.exec(new Runnable() {
+            @Override
+            public void run() {
+                queue.offer(EventThreadHelper.isCurrent(EventThreadHelperTest.this.service));
+                queue.offer(EventThreadHelper.isCurrent(EventThreadHelperTest.this.other));
+            }
+        }, this.service);
+
+        assertThat(queue.take(), is(false));
+        assertThat(queue.take(), is(true));
+        assertThat(queue.take(), is(false));
+    }
+
+    @Test(timeout = 10000)
+    public void execQueuesTasksOfAnotherService() throws InterruptedException {
+        final BlockingQueue<Thread> queue = new LinkedBlockingQueue<Thread>();
+
+        EventThreadHelper.exec(new Runnable() {
+            @Override
+            public void run() {
+                queue.offer(Thread.currentThread());
+                EventThreadHelper.exec(new Runnable() {
+                    @Override
+                    public void run() {
+                        queue.offer(Thread.currentThread());
+                    }
+                }, EventThreadHelperTest.this.other);
+            }
+        }, this.service);
+
+        assertThat(queue.take() == queue.take(), is(false));
+    }
+}
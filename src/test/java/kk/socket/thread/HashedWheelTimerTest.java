@@ -0,0 +1,113 @@
+package kk.socket.thread;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+@RunWith(JUnit4.class)
+public class HashedWheelTimerTest {
+
+    private final HashedWheelTimer timer = new HashedWheelTimer(10, TimeUnit.MILLISECONDS, 8);
+
+    @After
+    public void tearDown() {
+        this.timer.stop();
+    }
+
+    @Test(timeout = 5000)
+    public void runsAfterTheDelay() throws InterruptedException {
+        final BlockingQueue<Long> queue = new LinkedBlockingQueue<Long>();
+        long start = System.nanoTime();
+        HashedWheelTimer.Timeout timeout = this.timer.newTimeout(new Runnable() {
+            @Override
+            public void run() {
+                queue.offer(System.nanoTime());
+            }
+        }, 200, TimeUnit.MILLISECONDS);
+
+        // longer than a turn of the wheel
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(queue.take() - start);
+        assertThat(elapsed, greaterThanOrEqualTo(200L));
+        assertThat(timeout.isExpired(), is(true));
+    }
+
+    @Test(timeout = 5000)
+    public void cancel() throws InterruptedException {
+        final BlockingQueue<Integer> queue = new LinkedBlockingQueue<Integer>();
+        HashedWheelTimer.Timeout timeout = this.timer.newTimeout(new Runnable() {
+            @Override
+            public void run() {
+                queue.offer(1);
+            }
+        }, 30, TimeUnit.MILLISECONDS);
+
+        assertThat(timeout.cancel(), is(true));
+        assertThat(timeout.isCancelled(), is(true));
+        assertThat(timeout.rearm(30, TimeUnit.MILLISECONDS), is(false));
+        assertThat(queue.poll(200, TimeUnit.MILLISECONDS), is(nullValue()));
+    }
+
+    @Test(timeout = 5000)
+    public void rearmPushesTheDeadlineBack() throws InterruptedException {
+        final CountDownLatch fired = new CountDownLatch(1);
+        long start = System.nanoTime();
+        HashedWheelTimer.Timeout timeout = this.timer.newTimeout(new Runnable() {
+            @Override
+            public void run() {
+                fired.countDown();
+            }
+        }, 50, TimeUnit.MILLISECONDS);
+
+        for (int i = 0; i < 10; i++) {
+            Thread.sleep(20);
+            assertThat(timeout.rearm(50, TimeUnit.MILLISECONDS), is(true));
+        }
+        fired.await();
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertThat(elapsed, greaterThanOrEqualTo(250L));
+        assertThat(timeout.rearm(50, TimeUnit.MILLISECONDS), is(false));
+    }
+
+    @Test(timeout = 5000)
+    public void rearmToAnEarlierDeadline() throws InterruptedException {
+        final CountDownLatch fired = new CountDownLatch(1);
+        long start = System.nanoTime();
+        HashedWheelTimer.Timeout timeout = this.timer.newTimeout(new Runnable() {
+            @Override
+            public void run() {
+                fired.countDown();
+            }
+        }, 10, TimeUnit.SECONDS);
+
+        Thread.sleep(30);
+        timeout.rearm(20, TimeUnit.MILLISECONDS);
+        fired.await();
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), lessThan(1000L));
+    }
+
+    @Test(timeout = 5000)
+    public void manyTimeouts() throws InterruptedException {
+        final CountDownLatch fired = new CountDownLatch(1000);
+        for (int i = 0; i < 1000; i++) {
+            this.timer.newTimeout(new Runnable() {
+                @Override
+                public void run() {
+                    fired.countDown();
+                }
+            }, i % 100, TimeUnit.MILLISECONDS);
+        }
+        assertThat(fired.await(2, TimeUnit.SECONDS), is(true));
+    }
+}
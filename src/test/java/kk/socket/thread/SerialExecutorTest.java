@@ -0,0 +1,149 @@
+package kk.socket.thread;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+@RunWith(JUnit4.class)
+public class SerialExecutorTest {
+
+    private final ExecutorService pool = Executors.newFixedThreadPool(4);
+
+    @After
+    public void tearDown() {
+        this.pool.shutdownNow();
+    }
+
+    @Test(timeout = 10000)
+    public void runsTasksOneAtATimeInOrder() throws InterruptedException {
+        final SerialExecutor executor = new SerialExecutor(this.pool);
+        final int producers = 4;
+        final int tasks = 10000;
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger overlaps = new AtomicInteger();
+        final int[] last = new int[producers];
+        final AtomicInteger outOfOrder = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(producers * tasks);
+
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int p = 0; p < producers; p++) {
+            final int producer = p;
+            threads.add(new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 1; i <= tasks; i++) {
+                        final int n = i;
+                        executor.execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                if (running.incrementAndGet() != 1) overlaps.incrementAndGet();
+                                if (last[producer] != n - 1) outOfOrder.incrementAndGet();
+                                last[producer] = n;
+                                running.decrementAndGet();
+                                done.countDown();
+                            }
+                        });
+                    }
+                }
+            });
+        }
+        for (Thread thread : threads) thread.start();
+        done.await();
+
+        assertThat(overlaps.get(), is(0));
+        assertThat(outOfOrder.get(), is(0));
+    }
+
+    @Test(timeout = 10000)
+    public void keepsRunningAfterAnException() throws InterruptedException {
+        SerialExecutor executor = new SerialExecutor(this.pool);
+        final BlockingQueue<Integer> queue = new LinkedBlockingQueue<Integer>();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                throw new RuntimeException("expected");
+            }
+        });
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                queue.offer(1);
+            }
+        });
+        assertThat(queue.take(), is(1));
+    }
+
+    @Test(timeout = 10000)
+    public void execRunsInlineOnTheExecutor() throws InterruptedException {
+        final SerialExecutor executor = new SerialExecutor(this.pool);
+        final BlockingQueue<Integer> queue = new LinkedBlockingQueue<Integer>();
+        EventThreadHelper.exec(new Runnable() {
+            @Override
+            public void run() {
+                queue.offer(0);
+                EventThreadHelper.exec(new Runnable() {
+                    @Override
+                    public void run() {
+                        queue.offer(1);
+                    }
+                }, executor);
+                EventThreadHelper.nextTick(new Runnable() {
+                    @Override
+                    public void run() {
+                        queue.offer(3);
+                    }
+                }, executor);
+                queue.offer(2);
+            }
+        }, executor);
+
+        for (int i = 0; i < 4; i++) {
+            assertThat(queue.take(), is(i));
+        }
+        assertThat(executor.inExecutor(), is(false));
+    }
+
+    @Test(timeout = 10000)
+    public void shutdown() throws InterruptedException {
+        SerialExecutor executor = new SerialExecutor(this.pool);
+        final AtomicInteger count = new AtomicInteger();
+        for (int i = 0; i < 1000; i++) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    count.incrementAndGet();
+                }
+            });
+        }
+        executor.shutdown();
+
+        assertThat(executor.awaitTermination(5, TimeUnit.SECONDS), is(true));
+        assertThat(executor.isTerminated(), is(true));
+        assertThat(count.get(), is(1000));
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void rejectsTasksAfterShutdown() {
+        SerialExecutor executor = new SerialExecutor(this.pool);
+        executor.shutdown();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {}
+        });
+    }
+}
@@ -0,0 +1,69 @@
+package kk.socket.thread;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assume.assumeFalse;
+import static org.junit.Assume.assumeTrue;
+
+@RunWith(JUnit4.class)
+public class VirtualThreadLoopTest {
+
+    @Test
+    public void execRunsInlineOnTheVirtualThread() throws Exception {
+        assumeTrue(EventThreadHelper.isVirtualThreadSupported());
+
+        final BlockingQueue<Object> queue = new LinkedBlockingQueue<Object>();
+        final EventLoop loop = EventThreadHelper.newVirtualThreadLoop();
+        try {
+            EventThreadHelper.exec(new Runnable() {
+                @Override
+                public void run() {
+                    queue.offer(isVirtual(Thread.currentThread()));
+                    EventThreadHelper.exec(new Runnable() {
+                        @Override
+                        public void run() {
+                            queue.offer(1);
+                        }
+                    }, loop);
+                    queue.offer(2);
+                }
+            }, loop);
+            loop.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    queue.offer(loop.inEventLoop());
+                }
+            }, 10, TimeUnit.MILLISECONDS);
+
+            assertThat(queue.take(), is((Object)true));
+            assertThat(queue.take(), is((Object)1));
+            assertThat(queue.take(), is((Object)2));
+            assertThat(queue.take(), is((Object)true));
+        } finally {
+            loop.shutdown();
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void unsupportedBeforeJdk21() {
+        assumeFalse(EventThreadHelper.isVirtualThreadSupported());
+
+        EventThreadHelper.newVirtualThreadLoop();
+    }
+
+    private static boolean isVirtual(Thread thread) {
+        try {
+            return (Boolean)Thread.class.getMethod("isVirtual").invoke(thread);
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
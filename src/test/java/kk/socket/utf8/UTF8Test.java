@@ -1,5 +1,13 @@
 package kk.socket.utf8;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -7,6 +15,7 @@ import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.junit.Assert.assertThat;
 
 @RunWith(JUnit4.class)
@@ -82,6 +91,82 @@ public class UTF8Test {
         UTF8.decode("\u00F0\u009D");
     }
 
+    @Test
+    public void encodeAndDecodeEachValue() {
+        for (Data data : DATA) {
+            String reason = data.description != null? data.description : "U+" + Integer.toHexString(data.codePoint).toUpperCase();
+            try {
+                assertThat("Encoding: " + reason, UTF8.encode(data.decoded), is(data.encoded));
+                assertThat("Error expected: " + reason, data.error, is(false));
+            } catch (UTF8Exception e) {
+                assertThat("Unexpected error: " + reason, data.error, is(true));
+            }
+            try {
+                assertThat("Decoding: " + reason, UTF8.decode(data.encoded), is(data.decoded));
+                assertThat("Error expected: " + reason, data.error, is(false));
+            } catch (UTF8Exception e) {
+                assertThat("Unexpected error: " + reason, data.error, is(true));
+            }
+        }
+    }
+
+    @Test
+    public void returnAsciiUnchanged() throws UTF8Exception {
+        String ascii = "ascii only\u007F";
+        assertThat(UTF8.encode(ascii), is(sameInstance(ascii)));
+        assertThat(UTF8.decode(ascii), is(sameInstance(ascii)));
+    }
+
+    @Test
+    public void decodeBytes() throws UTF8Exception {
+        byte[] bytes = "xx cash money €€€ \uD834\uDF06".getBytes(StandardCharsets.UTF_8);
+        assertThat(UTF8.decode(bytes, 2, bytes.length - 2), is(" cash money €€€ \uD834\uDF06"));
+        assertThat(UTF8.decode(bytes, 0, 2), is("xx"));
+    }
+
+    @Test
+    public void decodeRange() throws UTF8Exception {
+        String byteString = "xx" + UTF8.encode("cash money €€€") + "yy";
+        assertThat(UTF8.decode(byteString, 2, byteString.length() - 4), is("cash money €€€"));
+        assertThat(UTF8.decode(byteString, 0, 6), is("xxcash"));
+    }
+
+    @Test(expected = UTF8Exception.class)
+    public void decodeBytesWithLoneSurrogate() throws UTF8Exception {
+        UTF8.decode(new byte[] {(byte)0xED, (byte)0xA0, (byte)0x80}, 0, 3);
+    }
+
+    @Test
+    public void decodeConcurrently() throws Exception {
+        final String[] decoded = new String[] {"cash money €€€", "\u05CA\u2C3C", "\uD834\uDF06 \uDBFF\uDFFF"};
+        final String[] encoded = new String[decoded.length];
+        for (int i = 0; i < decoded.length; i++) {
+            encoded[i] = UTF8.encode(decoded[i]);
+        }
+
+        ExecutorService service = Executors.newFixedThreadPool(decoded.length);
+        try {
+            List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+            for (int i = 0; i < decoded.length; i++) {
+                final int index = i;
+                results.add(service.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws Exception {
+                        for (int n = 0; n < 10000; n++) {
+                            if (!decoded[index].equals(UTF8.decode(encoded[index]))) return false;
+                        }
+                        return true;
+                    }
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                assertThat(result.get(), is(true));
+            }
+        } finally {
+            service.shutdown();
+        }
+    }
+
     private static class Data {
         public int codePoint = -1;
         public String description;